@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.benchmark;
+
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.example.GenericClass;
+import org.example.ITGenericClass;
+import org.example.JUnit3Test;
+import org.example.MyServiceIT;
+import org.example.MyServiceTests;
+import org.example.SimpleITTest;
+import org.example.SimpleTestCase;
+import org.example.TestMyService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Bundle;
+import org.osgi.service.log.LogService;
+
+import com.github.nfalco79.junit4osgi.registry.internal.AutoDiscoveryRegistry;
+import com.github.nfalco79.junit4osgi.registry.internal.util.BundleBuilder;
+
+/**
+ * Measures the discovery of tests in synthetic bundles.
+ *
+ * @author Nikolas Falco
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AutoDiscoveryRegistryBenchmark {
+
+	@Param({ "1", "50" })
+	public int bundleCount;
+
+	private AutoDiscoveryRegistry registry;
+	private List<Bundle> bundles;
+
+	@Setup(Level.Invocation)
+	public void setup() throws Exception {
+		registry = new AutoDiscoveryRegistry();
+		registry.setLog(mock(LogService.class));
+
+		// bundle entries are enumerated only once so they have to be
+		// created for each invocation
+		bundles = new ArrayList<Bundle>(bundleCount);
+		for (int i = 0; i < bundleCount; i++) {
+			bundles.add(BundleBuilder.newBuilder() //
+					.symbolicName("bundle" + i) //
+					.addClasses(SimpleTestCase.class, JUnit3Test.class, GenericClass.class, MyServiceIT.class, //
+							SimpleITTest.class, ITGenericClass.class, TestMyService.class, MyServiceTests.class) //
+					.build());
+		}
+	}
+
+	@TearDown(Level.Invocation)
+	public void tearDown() {
+		registry.dispose();
+	}
+
+	@Benchmark
+	public AutoDiscoveryRegistry registerTests() {
+		for (Bundle bundle : bundles) {
+			registry.registerTests(bundle);
+		}
+		return registry;
+	}
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+import org.osgi.framework.Bundle;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+import com.github.nfalco79.junit4osgi.runner.internal.ReportListener;
+import com.github.nfalco79.junit4osgi.runner.internal.TestHistory;
+
+/**
+ * Synthetic data shared by benchmarks.
+ *
+ * @author Nikolas Falco
+ */
+final class Fixtures {
+
+	private static final String[] PACKAGES = { "org.example", "org.example.internal", "com.acme.service", "com.acme.service.impl" };
+	private static final String[] SUFFIXES = { "Test", "IT", "Tests", "Helper" };
+
+	private Fixtures() {
+	}
+
+	/**
+	 * Returns class names spread on different packages and naming
+	 * conventions.
+	 */
+	static String[] testNames(int count) {
+		String[] names = new String[count];
+		for (int i = 0; i < count; i++) {
+			names[i] = PACKAGES[i % PACKAGES.length] + ".Class" + i + SUFFIXES[(i / PACKAGES.length) % SUFFIXES.length];
+		}
+		return names;
+	}
+
+	/**
+	 * Returns test beans of a bundle that contains any requested entry. The
+	 * bundle is a plain proxy so that the hot paths that call it are not
+	 * slowed down by a mock framework.
+	 */
+	static List<TestBean> testBeans(int count) throws Exception {
+		final URL entry = new URL("file:acme");
+		final Dictionary<String, String> headers = new Hashtable<String, String>();
+		Bundle bundle = (Bundle) Proxy.newProxyInstance(Fixtures.class.getClassLoader(), new Class<?>[] { Bundle.class }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				if ("getSymbolicName".equals(name) || "toString".equals(name)) {
+					return "acme";
+				} else if ("getBundleId".equals(name)) {
+					return 1L;
+				} else if ("getHeaders".equals(name)) {
+					return headers;
+				} else if ("getEntry".equals(name)) {
+					return entry;
+				} else if ("hashCode".equals(name)) {
+					return System.identityHashCode(proxy);
+				} else if ("equals".equals(name)) {
+					return proxy == args[0];
+				}
+				throw new UnsupportedOperationException(name);
+			}
+		});
+
+		List<TestBean> tests = new ArrayList<TestBean>(count);
+		for (String testName : testNames(count)) {
+			tests.add(new TestBean(bundle, testName));
+		}
+		return tests;
+	}
+
+	/**
+	 * Returns an history where each test has a different elapsed time and one
+	 * test every ten has failed.
+	 */
+	static TestHistory history(List<TestBean> tests) {
+		TestHistory history = new TestHistory(null);
+		for (int i = 0; i < tests.size(); i++) {
+			String testId = tests.get(i).getId();
+			history.setElapsedTime(testId, (i * 7919L) % 60000);
+			history.setFailed(testId, i % 10 == 0);
+		}
+		return history;
+	}
+
+	/**
+	 * Returns the description of a run of a suite of test classes.
+	 */
+	static Description suite(int suiteCount, int testCount) {
+		Description root = Description.createSuiteDescription("org.example.LargeSuite");
+		for (int i = 0; i < suiteCount; i++) {
+			String className = "org.example.Class" + i + "Test";
+			Description suite = Description.createSuiteDescription(className);
+			for (int j = 0; j < testCount; j++) {
+				suite.addChild(Description.createTestDescription(className, "test" + j));
+			}
+			root.addChild(suite);
+		}
+		Description run = Description.createSuiteDescription("run");
+		run.addChild(root);
+		return run;
+	}
+
+	/**
+	 * Notifies the events of the given run to a report listener, one test
+	 * every ten fails.
+	 */
+	static ReportListener run(Description run) throws Exception {
+		ReportListener listener = new ReportListener();
+		Result result = new Result();
+		RunNotifier notifier = new RunNotifier();
+		notifier.addListener(result.createListener());
+		notifier.addListener(listener);
+
+		notifier.fireTestRunStarted(run);
+		int count = 0;
+		for (Description suite : run.getChildren().get(0).getChildren()) {
+			for (Description test : suite.getChildren()) {
+				notifier.fireTestStarted(test);
+				if (++count % 10 == 0) {
+					notifier.fireTestFailure(new Failure(test, new AssertionError("expected:<" + count + "> but was:<0>")));
+				}
+				notifier.fireTestFinished(test);
+			}
+		}
+		notifier.fireTestRunFinished(result);
+		return listener;
+	}
+
+}
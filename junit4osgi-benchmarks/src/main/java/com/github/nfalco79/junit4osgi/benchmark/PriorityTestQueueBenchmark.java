@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+import com.github.nfalco79.junit4osgi.runner.internal.PriorityTestQueue;
+import com.github.nfalco79.junit4osgi.runner.internal.TestFilter;
+import com.github.nfalco79.junit4osgi.runner.internal.TestHistory;
+import com.github.nfalco79.junit4osgi.runner.internal.TestOrder;
+import com.github.nfalco79.junit4osgi.runner.internal.TestShard;
+
+/**
+ * Measures the enqueue of all tests in the registry and their removal one
+ * by one, as happens when the contributor bundle is uninstalled.
+ *
+ * @author Nikolas Falco
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PriorityTestQueueBenchmark {
+
+	@Param({ "1000", "10000" })
+	public int testCount;
+
+	@Param({ "1", "4" })
+	public int shardCount;
+
+	private TestFilter filter;
+	private TestHistory history;
+	private List<TestBean> tests;
+
+	@Setup
+	public void setup() throws Exception {
+		filter = new TestFilter("*Test, *IT", "*.internal.*");
+		tests = Fixtures.testBeans(testCount);
+		history = Fixtures.history(tests);
+	}
+
+	@Benchmark
+	public PriorityTestQueue addAll() {
+		PriorityTestQueue queue = new PriorityTestQueue(filter, new TestShard(0, shardCount, null), history, Arrays.asList(TestOrder.FAILURES, TestOrder.DURATION));
+		queue.addAll(tests);
+		return queue;
+	}
+
+	@Benchmark
+	public PriorityTestQueue addAllAndRemove() {
+		PriorityTestQueue queue = addAll();
+		for (TestBean test : tests) {
+			queue.remove(test);
+		}
+		return queue;
+	}
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.benchmark;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+import com.github.nfalco79.junit4osgi.runner.internal.PriorityTestQueue;
+import com.github.nfalco79.junit4osgi.runner.internal.TestHistory;
+import com.github.nfalco79.junit4osgi.runner.internal.TestOrder;
+
+/**
+ * Measures the throughput of the test queue when registry events add tests
+ * while parallel workers poll them.
+ * <p>
+ * The baseline is a {@link PriorityBlockingQueue} guarded by a single lock
+ * that does not reject duplicates, ranks are computed in advance so that
+ * comparisons do not cost more than in the test queue.
+ *
+ * @author Nikolas Falco
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PriorityTestQueueContentionBenchmark {
+
+	/**
+	 * The position of each producer in the list of tests.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int index;
+
+		int next(int size) {
+			index = (index + 1) % size;
+			return index;
+		}
+	}
+
+	@Param({ "10000" })
+	public int testCount;
+
+	private List<TestBean> tests;
+	private Queue<TestBean> priorityQueue;
+	private Queue<TestBean> blockingQueue;
+
+	@Setup
+	public void setup() throws Exception {
+		tests = Fixtures.testBeans(testCount);
+		final TestHistory history = Fixtures.history(tests);
+
+		priorityQueue = new PriorityTestQueue(null, null, history, Arrays.asList(TestOrder.FAILURES, TestOrder.DURATION));
+		final List<TestOrder> orders = Arrays.asList(TestOrder.FAILURES, TestOrder.DURATION);
+		final Map<TestBean, long[]> ranks = new IdentityHashMap<TestBean, long[]>();
+		for (TestBean test : tests) {
+			long[] testRanks = new long[orders.size()];
+			for (int i = 0; i < testRanks.length; i++) {
+				testRanks[i] = orders.get(i).rank(test, history);
+			}
+			ranks.put(test, testRanks);
+		}
+
+		priorityQueue = new PriorityTestQueue(null, null, history, orders);
+		blockingQueue = new PriorityBlockingQueue<TestBean>(testCount, new Comparator<TestBean>() {
+			@Override
+			public int compare(TestBean t1, TestBean t2) {
+				long[] ranks1 = ranks.get(t1);
+				long[] ranks2 = ranks.get(t2);
+				for (int i = 0; i < ranks1.length; i++) {
+					if (ranks1[i] != ranks2[i]) {
+						return ranks1[i] < ranks2[i] ? -1 : 1;
+					}
+				}
+				return 0;
+			}
+		});
+		// half full so that consumers rarely find the queue empty
+		for (TestBean test : tests.subList(0, testCount / 2)) {
+			priorityQueue.add(test);
+			blockingQueue.add(test);
+		}
+	}
+
+	@Benchmark
+	@Group("priority")
+	@GroupThreads(2)
+	public boolean priorityOffer(Cursor cursor) {
+		return priorityQueue.offer(tests.get(cursor.next(testCount)));
+	}
+
+	@Benchmark
+	@Group("priority")
+	@GroupThreads(2)
+	public TestBean priorityPoll() {
+		return priorityQueue.poll();
+	}
+
+	@Benchmark
+	@Group("blocking")
+	@GroupThreads(2)
+	public boolean blockingOffer(Cursor cursor) {
+		return blockingQueue.offer(tests.get(cursor.next(testCount)));
+	}
+
+	@Benchmark
+	@Group("blocking")
+	@GroupThreads(2)
+	public TestBean blockingPoll() {
+		return blockingQueue.poll();
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nfalco79.junit4osgi.runner.internal.xml.util.XMLChar;
+import com.github.nfalco79.junit4osgi.runner.internal.xml.util.XMLSanitizer;
+
+/**
+ * Compares the report text sanitizer with the previous per character copy
+ * done by {@code XMLReport.escape}.
+ *
+ * @author Nikolas Falco
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class XMLSanitizerBenchmark {
+
+	@Param({ "clean", "invalid" })
+	public String content;
+
+	@Param({ "64", "8192" })
+	public int length;
+
+	private String text;
+
+	@Setup
+	public void setup() {
+		StringBuilder sb = new StringBuilder(length);
+		String line = "\tat org.example.SimpleTestCase.test_stdout(SimpleTestCase.java:42)\n";
+		while (sb.length() < length) {
+			sb.append(line);
+		}
+		sb.setLength(length);
+		if ("invalid".equals(content)) {
+			sb.setCharAt(length / 2, '\u0001');
+		}
+		text = sb.toString();
+	}
+
+	@Benchmark
+	public String legacyEscape() {
+		char[] escapedMessage = text.toCharArray();
+		for (int i = 0; i < escapedMessage.length; i++) {
+			if (XMLChar.isInvalid(escapedMessage[i])) {
+				escapedMessage[i] = '?';
+			}
+		}
+		return new String(escapedMessage);
+	}
+
+	@Benchmark
+	public String sanitize() {
+		return XMLSanitizer.sanitize(text);
+	}
+
+	@Benchmark
+	public String cdata() {
+		return XMLSanitizer.cdata(text);
+	}
+
+}
@@ -18,7 +18,9 @@ package com.github.nfalco79.junit4osgi.gui;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.table.AbstractTableModel;
 
@@ -41,6 +43,20 @@ public class ResultTableModel extends AbstractTableModel {
 	 */
 	private List<TestRecord> results = new ArrayList<TestRecord>();
 
+	/**
+	 * Index of results by test description.
+	 */
+	private Map<Description, TestRecord> index = new HashMap<Description, TestRecord>();
+
+	private int successCount;
+	private int errorCount;
+	private int failureCount;
+
+	/**
+	 * First row appended since the batch has began, -1 if not in batch.
+	 */
+	private int batchFirstRow = -1;
+
 	@Override
 	public int getRowCount() {
 		return results.size();
@@ -61,9 +77,7 @@ public class ResultTableModel extends AbstractTableModel {
 	 */
 	public void addFailedTest(Description t, Error e) {
 		if (!contains(t)) {
-			TestRecord rec = new FailureTestRecord(t, e);
-			results.add(rec);
-			fireTableDataChanged();
+			add(new FailureTestRecord(t, e));
 		}
 	}
 
@@ -77,9 +91,7 @@ public class ResultTableModel extends AbstractTableModel {
 	 */
 	public void addErrorTest(Description t, Throwable e) {
 		if (!contains(t)) {
-			TestRecord rec = new ErrorTestRecord(t, e);
-			results.add(rec);
-			fireTableDataChanged();
+			add(new ErrorTestRecord(t, e));
 		}
 	}
 
@@ -91,9 +103,7 @@ public class ResultTableModel extends AbstractTableModel {
 	 */
 	public void addSkippedTest(Description t, String reason) {
 		if (!contains(t)) {
-			TestRecord rec = new SkippedTestRecord(t, reason);
-			results.add(rec);
-			fireTableDataChanged();
+			add(new SkippedTestRecord(t, reason));
 		}
 	}
 
@@ -105,10 +115,56 @@ public class ResultTableModel extends AbstractTableModel {
 	 */
 	public void addTest(Description t) {
 		if (!contains(t)) {
-			TestRecord rec = new TestRecord(t);
-			results.add(rec);
-			fireTableDataChanged();
+			add(new TestRecord(t));
+		}
+	}
+
+	/**
+	 * Appends the given record to the results.
+	 *
+	 * @param rec
+	 *            the test record
+	 */
+	private void add(TestRecord rec) {
+		index.put(rec.getTest(), rec);
+		results.add(rec);
+		if (rec.isSucess()) {
+			successCount++;
+		} else if (rec.isError()) {
+			errorCount++;
+		} else if (rec.isFailed()) {
+			failureCount++;
+		}
+
+		if (batchFirstRow == -1) {
+			int row = results.size() - 1;
+			fireTableRowsInserted(row, row);
+		}
+	}
+
+	/**
+	 * Starts a batch of insertions, listeners are notified only once when the
+	 * batch ends.
+	 */
+	public void beginBatch() {
+		batchFirstRow = results.size();
+	}
+
+	/**
+	 * Ends the current batch of insertions notifying listeners about all rows
+	 * appended since {@link #beginBatch()}.
+	 *
+	 * @return {@code true} if at least one row has been appended
+	 */
+	public boolean endBatch() {
+		int firstRow = batchFirstRow;
+		batchFirstRow = -1;
+		int lastRow = results.size() - 1;
+		if (firstRow != -1 && lastRow >= firstRow) {
+			fireTableRowsInserted(firstRow, lastRow);
+			return true;
 		}
+		return false;
 	}
 
 	public int getTestCount() {
@@ -121,13 +177,7 @@ public class ResultTableModel extends AbstractTableModel {
 	 * @return the number of success
 	 */
 	public int getSuccess() {
-		int count = 0;
-		for (TestRecord test : results) {
-			if (test.isSucess()) {
-				count++;
-			}
-		}
-		return count;
+		return successCount;
 	}
 
 	/**
@@ -136,13 +186,7 @@ public class ResultTableModel extends AbstractTableModel {
 	 * @return the number of errors
 	 */
 	public int getErrors() {
-		int count = 0;
-		for (TestRecord test : results) {
-			if (test.isError()) {
-				count++;
-			}
-		}
-		return count;
+		return errorCount;
 	}
 
 	/**
@@ -151,13 +195,7 @@ public class ResultTableModel extends AbstractTableModel {
 	 * @return the number of failures
 	 */
 	public int getFailures() {
-		int count = 0;
-		for (TestRecord test : results) {
-			if (test.isFailed()) {
-				count++;
-			}
-		}
-		return count;
+		return failureCount;
 	}
 
 	/**
@@ -168,12 +206,7 @@ public class ResultTableModel extends AbstractTableModel {
 	 * @return {@code true} if the list contains the test.
 	 */
 	private boolean contains(Description t) {
-		for (TestRecord test : results) {
-			if (test.getTest().equals(t)) {
-				return true;
-			}
-		}
-		return false;
+		return index.containsKey(t);
 	}
 
 	/**
@@ -181,6 +214,13 @@ public class ResultTableModel extends AbstractTableModel {
 	 */
 	public void clear() {
 		results.clear();
+		index.clear();
+		successCount = 0;
+		errorCount = 0;
+		failureCount = 0;
+		if (batchFirstRow != -1) {
+			batchFirstRow = 0;
+		}
 		fireTableDataChanged();
 	}
 
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.gui;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.runner.notification.RunListener;
+
+import com.github.nfalco79.junit4osgi.runner.spi.TestRunner;
+import com.github.nfalco79.junit4osgi.runner.spi.TestRunnerNotifier;
+
+/**
+ * Executes tests through the runner service.
+ * <p>
+ * This is the only class of the GUI that links the runner API, it is loaded
+ * only when a runner service is bound so the GUI works also when the runner
+ * bundle is not installed.
+ *
+ * @author Nikolas Falco
+ */
+final class RunnerService {
+
+	private static class Notifier implements TestRunnerNotifier {
+		private final CountDownLatch latch = new CountDownLatch(1);
+		private final RunListener listener;
+		private volatile boolean started;
+
+		Notifier(RunListener listener) {
+			this.listener = listener;
+		}
+
+		@Override
+		public void start() {
+			started = true;
+		}
+
+		@Override
+		public void stop() {
+			latch.countDown();
+		}
+
+		@Override
+		public RunListener getRunListener() {
+			return listener;
+		}
+	}
+
+	private final TestRunner runner;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param service
+	 *            the runner service object
+	 */
+	RunnerService(Object service) {
+		this.runner = (TestRunner) service;
+	}
+
+	/**
+	 * Returns if this wraps the given service object.
+	 *
+	 * @param service
+	 *            the runner service object
+	 * @return {@code true} if service is the wrapped runner
+	 */
+	boolean wraps(Object service) {
+		return runner == service;
+	}
+
+	boolean isRunning() {
+		return runner.isRunning();
+	}
+
+	void stop() {
+		runner.stop();
+	}
+
+	/**
+	 * Executes the given tests and waits until the runner has completed.
+	 *
+	 * @param testIds
+	 *            the ids of the tests to execute
+	 * @param reportsPath
+	 *            where the runner writes reports, if {@code null} the runner
+	 *            default reports directory is used
+	 * @param listener
+	 *            notified of the test events
+	 * @return {@code false} if the runner has refused the job, {@code true}
+	 *         otherwise
+	 * @throws InterruptedException
+	 *             if the current thread is interrupted while waiting
+	 */
+	boolean execute(String[] testIds, String reportsPath, RunListener listener) throws InterruptedException {
+		Notifier notifier = new Notifier(listener);
+		runner.start(testIds, reportsPath, notifier);
+		while (!notifier.latch.await(500, TimeUnit.MILLISECONDS)) {
+			if (!notifier.started && !runner.isRunning()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -45,4 +45,36 @@ public class SearchPattern {
 		}
 		return true;
 	}
+
+	/**
+	 * Returns if this pattern matches only a subset of the text matched by the
+	 * given pattern.
+	 *
+	 * @param previous
+	 *            the pattern to compare
+	 * @return {@code true} if any text matched by this pattern is also matched
+	 *         by the previous one
+	 */
+	public boolean narrows(final SearchPattern previous) {
+		if (previous.patterns == null) {
+			return true;
+		}
+		if (patterns == null) {
+			return false;
+		}
+
+		for (String old : previous.patterns) {
+			boolean found = false;
+			for (String pattern : patterns) {
+				if (pattern.contains(old)) {
+					found = true;
+					break;
+				}
+			}
+			if (!found) {
+				return false;
+			}
+		}
+		return true;
+	}
 }
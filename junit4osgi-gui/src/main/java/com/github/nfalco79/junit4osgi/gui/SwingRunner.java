@@ -27,11 +27,14 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
-import javax.swing.DefaultListModel;
 import javax.swing.GroupLayout;
 import javax.swing.GroupLayout.Alignment;
 import javax.swing.JFrame;
@@ -41,7 +44,10 @@ import javax.swing.JPopupMenu;
 import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
+import javax.swing.ListSelectionModel;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.TableColumn;
 
 import org.junit.Ignore;
@@ -62,6 +68,13 @@ import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent;
  */
 public class SwingRunner extends JFrame {
 
+	/**
+	 * The path on disk where the runner service saves the reports of tests
+	 * executed by the GUI. When not set the reports are saved in the runner
+	 * default reports directory, see org.osgi.junit.reportsPath.
+	 */
+	public static final String REPORT_PATH = "org.osgi.junit.gui.reportsPath";
+
 	private static final long serialVersionUID = 1L;
 
 	/**
@@ -88,11 +101,49 @@ public class SwingRunner extends JFrame {
 	private javax.swing.JList lstSuite;
 	private javax.swing.JTextField txtSearchTest;
 	private JPopupMenu popmnuTestSelected;
-	private DefaultListModel/*<TestModel>*/ lstModel = new DefaultListModel/*<TestModel>*/();
+	private TestListModel lstModel = new TestListModel();
 
 	private transient SwingTestRegistryChangeListener registryListener = new SwingTestRegistryChangeListener();
+	/**
+	 * Bridge to update components from test and registry threads.
+	 */
+	private transient SwingUpdateQueue updateQueue = new SwingUpdateQueue(50) {
+		private ResultTableModel tblModel;
+
+		@Override
+		protected void beforeFlush() {
+			// registry events could arrive before components are created
+			tblModel = tblTestResult != null ? (ResultTableModel) tblTestResult.getModel() : null;
+			if (tblModel != null) {
+				tblModel.beginBatch();
+			}
+		}
+
+		@Override
+		protected void afterFlush() {
+			if (tblModel != null && tblModel.endBatch()) {
+				adjustScroll();
+			}
+		}
+	};
 	private transient TestRegistry registry;
 	private transient LogService logService;
+	private transient volatile RunnerService runner;
+	/**
+	 * The runner that is executing tests requested by this GUI.
+	 */
+	private transient volatile RunnerService activeRunner;
+	/**
+	 * Executes one test run at time.
+	 */
+	private transient ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Test Run");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
 
 	public SwingRunner() {
 		running = false;
@@ -133,6 +184,9 @@ public class SwingRunner extends JFrame {
 		if (registry != null && registryListener != null) {
 			registry.removeTestRegistryListener(registryListener);
 		}
+		stopped = true;
+		executor.shutdownNow();
+		updateQueue.dispose();
 		setVisible(false);
 		dispose();
 	}
@@ -141,29 +195,35 @@ public class SwingRunner extends JFrame {
 	 * Refresh the list of available test suites.
 	 */
 	private void refreshSuites() {
-		List<Object> selection = Arrays.asList(lstSuite.getSelectedValues());
-		List<Integer> selectionIndexes = new ArrayList<Integer>(selection.size());
-
-		SearchPattern searchPattern = new SearchPattern(txtSearchTest.getText());
-		Set<TestBean> tests = registry.getTests();
-
-		lstModel.clear();
-
-		int index = 0;
-		for (TestBean test : tests) {
-			String text = test.getName().toLowerCase();
-			if (searchPattern.matches(text)) {
-				TestModel testModel = new TestModel(test);
-				lstModel.addElement(testModel);
-				if (selection.contains(testModel)) {
-					selectionIndexes.add(index);
-				}
-				index++;
-			}
-		}
+		Set<Object> selection = new HashSet<Object>(Arrays.asList(lstSuite.getSelectedValues()));
+
+		lstModel.setTests(registry.getTests());
+		lstModel.filter(txtSearchTest.getText());
+
+		restoreSelection(selection);
+	}
+
+	/**
+	 * Shows only test suites that matches the search text.
+	 */
+	private void searchSuites() {
+		Set<Object> selection = new HashSet<Object>(Arrays.asList(lstSuite.getSelectedValues()));
+
+		lstModel.filter(txtSearchTest.getText());
+
+		restoreSelection(selection);
+	}
 
-		for (Integer idx : selectionIndexes) {
-			lstSuite.addSelectionInterval(idx, idx);
+	private void restoreSelection(Set<Object> selection) {
+		ListSelectionModel selectionModel = lstSuite.getSelectionModel();
+		selectionModel.setValueIsAdjusting(true);
+		try {
+			selectionModel.clearSelection();
+			for (int idx : lstModel.indicesOf(selection)) {
+				selectionModel.addSelectionInterval(idx, idx);
+			}
+		} finally {
+			selectionModel.setValueIsAdjusting(false);
 		}
 	}
 
@@ -296,6 +356,8 @@ public class SwingRunner extends JFrame {
 		srcSuite.setAutoscrolls(true);
 
 		lstSuite.setModel(lstModel);
+		// avoid to measure all cells of the list
+		lstSuite.setPrototypeCellValue("org.example.package.name.AVeryLongTestCaseClassName");
 		lstSuite.setMaximumSize(null);
 		lstSuite.setMinimumSize(null);
 		lstSuite.setPreferredSize(null);
@@ -338,6 +400,22 @@ public class SwingRunner extends JFrame {
 		lblExecutedResults.setPreferredSize(null);
 
 		txtSearchTest.setToolTipText("Search your testcase by typing part of its name");
+		txtSearchTest.getDocument().addDocumentListener(new DocumentListener() {
+			@Override
+			public void insertUpdate(DocumentEvent evt) {
+				searchSuites();
+			}
+
+			@Override
+			public void removeUpdate(DocumentEvent evt) {
+				searchSuites();
+			}
+
+			@Override
+			public void changedUpdate(DocumentEvent evt) {
+				// attributes changes does not affect the search
+			}
+		});
 
 		btnSearch.setText("Search");
 		btnSearch.setToolTipText("search testcase by its name");
@@ -485,15 +563,18 @@ public class SwingRunner extends JFrame {
 		btnStop.setEnabled(false);
 		btnStop.setText("Stopping...");
 		stopped = true;
+
+		RunnerService testRunner = activeRunner;
+		if (testRunner != null) {
+			testRunner.stop();
+		}
 	}
 
 	private void allButtonActionPerformed(ActionEvent evt) {
 		int max = lstModel.getSize();
-		int[] indices = new int[max];
-		for (int i = 0; i < max; i++) {
-			indices[i] = i;
+		if (max > 0) {
+			lstSuite.setSelectionInterval(0, max - 1);
 		}
-		lstSuite.setSelectedIndices(indices);
 	}
 
 	private void showPopupMenu(MouseEvent evt) {
@@ -539,8 +620,7 @@ public class SwingRunner extends JFrame {
 	}
 
 	private void btnSearchActionPerformed(ActionEvent evt) {
-		refreshSuites();
-
+		searchSuites();
 	}
 
 	/**
@@ -568,7 +648,8 @@ public class SwingRunner extends JFrame {
 			}
 		};
 
-		new Thread(thread).start();
+		// the runner service executes only whole test classes
+		executor.execute(thread);
 	}
 
 	/**
@@ -583,7 +664,7 @@ public class SwingRunner extends JFrame {
 		ResultTableModel model = (ResultTableModel) tblTestResult.getModel();
 		model.clear();
 
-		Runnable thread = new TestRunnable<TestBean>(tests) {
+		final Runnable localRun = new TestRunnable<TestBean>(tests) {
 			@Override
 			protected String getTestMethod(TestBean test) {
 				return null;
@@ -608,7 +689,76 @@ public class SwingRunner extends JFrame {
 			}
 		};
 
-		new Thread(thread, "Test Run").start();
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (executeOnRunner(tests)) {
+					runFinished();
+				} else {
+					localRun.run();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Submits tests to the runner service so that reports and all runner
+	 * settings apply also to tests executed by the GUI.
+	 *
+	 * @param tests
+	 *            to execute
+	 * @return {@code false} if the runner service is not available or busy,
+	 *         {@code true} otherwise
+	 */
+	private boolean executeOnRunner(final List<TestBean> tests) {
+		RunnerService testRunner = runner;
+		if (testRunner == null || testRunner.isRunning()) {
+			return false;
+		}
+
+		String[] testIds = new String[tests.size()];
+		for (int i = 0; i < testIds.length; i++) {
+			testIds[i] = tests.get(i).getId();
+		}
+
+		activeRunner = testRunner;
+		try {
+			if (!testRunner.execute(testIds, System.getProperty(REPORT_PATH), new MyTestListener())) {
+				// the runner has refused the job
+				return stopped;
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return true;
+		} finally {
+			activeRunner = null;
+		}
+	}
+
+	/**
+	 * Restores the UI state at the end of a test run.
+	 */
+	private void runFinished() {
+		// enqueued to be executed after all pending results
+		updateQueue.post(new Runnable() {
+			@Override
+			public void run() {
+				progressBar.setIndeterminate(false);
+				progressBar.setMaximum(100);
+				progressBar.setValue(100);
+
+				btnExecute.setText("Execute");
+				btnExecute.setEnabled(true);
+				btnStop.setText("Stop");
+				btnStop.setEnabled(false);
+				running = false;
+				stopped = false;
+
+				computeExecutedTest();
+				setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
+			}
+		});
 	}
 
 	/**
@@ -629,6 +779,30 @@ public class SwingRunner extends JFrame {
 		registry.addTestRegistryListener(registryListener);
 	}
 
+	/**
+	 * Binds the runner service used to execute test classes. The parameter
+	 * is not typed so that this class does not link the optional runner API.
+	 *
+	 * @param runner
+	 *            the runner service
+	 */
+	public void bindRunner(Object runner) {
+		this.runner = new RunnerService(runner);
+	}
+
+	/**
+	 * Remove binds of the runner service instance if matches the current.
+	 *
+	 * @param runner
+	 *            the runner service that is being disabled
+	 */
+	public void unbindRunner(Object runner) {
+		RunnerService current = this.runner;
+		if (current != null && current.wraps(runner)) {
+			this.runner = null;
+		}
+	}
+
 	public void setLog(LogService logService) {
 		if (logService == this.logService) {
 			this.logService = null;
@@ -677,26 +851,16 @@ public class SwingRunner extends JFrame {
 				Class<?> testClass = getTestClass(test);
 				String methodName = getTestMethod(test);
 
-				if (methodName == null) {
+				if (testClass == null) {
+					continue;
+				} else if (methodName == null) {
 					core.run(testClass);
 				} else {
 					core.run(Request.method(testClass, methodName));
 				}
 			}
 
-			progressBar.setIndeterminate(false);
-			progressBar.setMaximum(100);
-			progressBar.setValue(100);
-
-			btnExecute.setText("Execute");
-			btnExecute.setEnabled(true);
-			btnStop.setText("Stop");
-			btnStop.setEnabled(false);
-			running = false;
-			stopped = false;
-
-			computeExecutedTest();
-			setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
+			runFinished();
 		}
 
 		protected abstract String getTestMethod(T test);
@@ -711,64 +875,84 @@ public class SwingRunner extends JFrame {
 		private ResultTableModel tblModel = (ResultTableModel) tblTestResult.getModel();
 
 		@Override
-		public void testIgnored(Description description) throws Exception {
-			Ignore ignore = description.getAnnotation(Ignore.class);
-			tblModel.addSkippedTest(description, ignore.value());
-			adjustScroll();
+		public void testIgnored(final Description description) throws Exception {
+			final Ignore ignore = description.getAnnotation(Ignore.class);
+			updateQueue.post(new Runnable() {
+				@Override
+				public void run() {
+					tblModel.addSkippedTest(description, ignore.value());
+				}
+			});
 		}
 
 		@Override
-		public void testAssumptionFailure(Failure failure) {
-			tblModel.addSkippedTest(failure.getDescription(), failure.getMessage());
-			adjustScroll();
+		public void testAssumptionFailure(final Failure failure) {
+			updateQueue.post(new Runnable() {
+				@Override
+				public void run() {
+					tblModel.addSkippedTest(failure.getDescription(), failure.getMessage());
+				}
+			});
 		}
 
 		@Override
-		public void testFailure(Failure failure) throws Exception {
-			if (failure.getException() instanceof Error) {
-				tblModel.addFailedTest(failure.getDescription(), (Error) failure.getException());
-			} else {
-				tblModel.addErrorTest(failure.getDescription(), failure.getException());
-			}
-			adjustScroll();
+		public void testFailure(final Failure failure) throws Exception {
+			updateQueue.post(new Runnable() {
+				@Override
+				public void run() {
+					if (failure.getException() instanceof Error) {
+						tblModel.addFailedTest(failure.getDescription(), (Error) failure.getException());
+					} else {
+						tblModel.addErrorTest(failure.getDescription(), failure.getException());
+					}
+				}
+			});
 		}
 
 		@Override
-		public void testFinished(Description description) throws Exception {
-			tblModel.addTest(description);
-			adjustScroll();
+		public void testFinished(final Description description) throws Exception {
+			updateQueue.post(new Runnable() {
+				@Override
+				public void run() {
+					tblModel.addTest(description);
+				}
+			});
 		}
+	}
 
-		/**
-		 * Adjust the scrolling bar of the result table.
-		 */
-		private void adjustScroll() {
-			JScrollBar bar = srcResult.getVerticalScrollBar();
-			if ((bar != null) && (bar.isVisible())) {
-				bar.setValue(Integer.MAX_VALUE);
-			}
+	/**
+	 * Adjust the scrolling bar of the result table.
+	 */
+	private void adjustScroll() {
+		JScrollBar bar = srcResult.getVerticalScrollBar();
+		if ((bar != null) && (bar.isVisible())) {
+			bar.setValue(Integer.MAX_VALUE);
 		}
 	}
 
 	private class SwingTestRegistryChangeListener implements TestRegistryChangeListener {
 		@Override
-		public void registryChanged(TestRegistryEvent event) {
-			TestModel testModel = new TestModel(event.getTest());
-
-			switch (event.getType()) {
-			case ADD:
-				SearchPattern searchPattern = new SearchPattern(txtSearchTest.getText());
-				String testName = testModel.toString().toLowerCase();
-				if (searchPattern.matches(testName)) {
-					lstModel.addElement(testModel);
-				}
-				break;
-			case REMOVE:
-				lstModel.removeElement(testModel);
-				break;
-			default:
-				break;
+		public void registryChanged(final TestRegistryEvent event) {
+			final TestBean test = event.getTest();
+			if (test == null) {
+				throw new IllegalArgumentException("event has a null test bean");
 			}
+
+			updateQueue.post(new Runnable() {
+				@Override
+				public void run() {
+					switch (event.getType()) {
+					case ADD:
+						lstModel.add(test);
+						break;
+					case REMOVE:
+						lstModel.remove(test);
+						break;
+					default:
+						break;
+					}
+				}
+			});
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.gui;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Collects UI updates posted by any thread and executes them in batch on the
+ * event dispatch thread at most once every flush period.
+ */
+public class SwingUpdateQueue {
+
+	private final Queue<Runnable> updates = new ConcurrentLinkedQueue<Runnable>();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private final long period;
+	private final ScheduledExecutorService scheduler;
+
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			flush();
+		}
+	};
+
+	private final Runnable scheduleTask = new Runnable() {
+		@Override
+		public void run() {
+			SwingUtilities.invokeLater(flushTask);
+		}
+	};
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param period
+	 *            the flush period in milliseconds
+	 */
+	public SwingUpdateQueue(long period) {
+		this.period = period;
+		this.scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "SwingRunner-updater");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Enqueues an update to be executed on the event dispatch thread with the
+	 * next flush.
+	 *
+	 * @param update
+	 *            the UI update
+	 */
+	public void post(Runnable update) {
+		updates.add(update);
+		if (scheduled.compareAndSet(false, true)) {
+			scheduler.schedule(scheduleTask, period, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Executes all pending updates, must be called on the event dispatch
+	 * thread.
+	 */
+	public void flush() {
+		scheduled.set(false);
+		if (updates.isEmpty()) {
+			return;
+		}
+
+		beforeFlush();
+		try {
+			Runnable update;
+			while ((update = updates.poll()) != null) {
+				update.run();
+			}
+		} finally {
+			afterFlush();
+		}
+	}
+
+	/**
+	 * Called on the event dispatch thread before execute a batch of updates.
+	 */
+	protected void beforeFlush() {
+	}
+
+	/**
+	 * Called on the event dispatch thread after a batch of updates has been
+	 * executed.
+	 */
+	protected void afterFlush() {
+	}
+
+	/**
+	 * Discards pending updates and stops the scheduler.
+	 */
+	public void dispose() {
+		scheduler.shutdownNow();
+		updates.clear();
+	}
+
+}
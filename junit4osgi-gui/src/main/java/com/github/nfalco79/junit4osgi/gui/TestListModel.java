@@ -0,0 +1,203 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.gui;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import javax.swing.AbstractListModel;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+/**
+ * List model of the tests available in the registry.
+ * <p>
+ * Tests are kept sorted by name together with their lower case name so that
+ * a search does not have to compute it again. When the search is refined only
+ * the visible tests are matched again.
+ */
+public class TestListModel extends AbstractListModel {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final class Entry {
+		private final TestModel model;
+		private final String key;
+
+		private Entry(TestModel model) {
+			this.model = model;
+			this.key = model.toString().toLowerCase();
+		}
+	}
+
+	private static final Comparator<Entry> COMPARATOR = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry e1, Entry e2) {
+			int result = e1.key.compareTo(e2.key);
+			if (result == 0) {
+				result = e1.model.getTest().getId().compareTo(e2.model.getTest().getId());
+			}
+			return result;
+		}
+	};
+
+	/**
+	 * All tests sorted by name.
+	 */
+	private final List<Entry> tests = new ArrayList<Entry>();
+	/**
+	 * Tests that matches the current search pattern.
+	 */
+	private List<Entry> visible = new ArrayList<Entry>();
+	private SearchPattern pattern = new SearchPattern(null);
+
+	@Override
+	public int getSize() {
+		return visible.size();
+	}
+
+	@Override
+	public Object getElementAt(int index) {
+		return visible.get(index).model;
+	}
+
+	/**
+	 * Replaces all tests of this model.
+	 *
+	 * @param beans
+	 *            the new tests
+	 */
+	public void setTests(Collection<TestBean> beans) {
+		tests.clear();
+		for (TestBean bean : beans) {
+			tests.add(new Entry(new TestModel(bean)));
+		}
+		Collections.sort(tests, COMPARATOR);
+
+		int oldSize = visible.size();
+		visible = match(tests);
+		fireChanged(oldSize);
+	}
+
+	/**
+	 * Shows only tests that matches the given query.
+	 *
+	 * @param query
+	 *            the search text
+	 * @see SearchPattern
+	 */
+	public void filter(String query) {
+		SearchPattern newPattern = new SearchPattern(query);
+		// a refined search could only match tests that are already visible
+		List<Entry> candidates = newPattern.narrows(pattern) ? visible : tests;
+		pattern = newPattern;
+
+		int oldSize = visible.size();
+		visible = match(candidates);
+		fireChanged(oldSize);
+	}
+
+	/**
+	 * Adds a test, it is visible only if matches the current search.
+	 *
+	 * @param bean
+	 *            the test to add
+	 */
+	public void add(TestBean bean) {
+		Entry entry = new Entry(new TestModel(bean));
+		int index = Collections.binarySearch(tests, entry, COMPARATOR);
+		if (index >= 0) {
+			return;
+		}
+		tests.add(-index - 1, entry);
+
+		if (pattern.matches(entry.key)) {
+			index = -Collections.binarySearch(visible, entry, COMPARATOR) - 1;
+			visible.add(index, entry);
+			fireIntervalAdded(this, index, index);
+		}
+	}
+
+	/**
+	 * Removes a test.
+	 *
+	 * @param bean
+	 *            the test to remove
+	 */
+	public void remove(TestBean bean) {
+		Entry entry = new Entry(new TestModel(bean));
+		int index = Collections.binarySearch(tests, entry, COMPARATOR);
+		if (index < 0) {
+			return;
+		}
+		tests.remove(index);
+
+		index = Collections.binarySearch(visible, entry, COMPARATOR);
+		if (index >= 0) {
+			visible.remove(index);
+			fireIntervalRemoved(this, index, index);
+		}
+	}
+
+	/**
+	 * Returns the index of the visible tests contained in the given set.
+	 *
+	 * @param models
+	 *            a set of {@link TestModel}
+	 * @return the indexes in ascending order
+	 */
+	public int[] indicesOf(Set<?> models) {
+		int[] indices = new int[models.size()];
+		int count = 0;
+		for (int i = 0; i < visible.size() && count < indices.length; i++) {
+			if (models.contains(visible.get(i).model)) {
+				indices[count++] = i;
+			}
+		}
+
+		int[] result = new int[count];
+		System.arraycopy(indices, 0, result, 0, count);
+		return result;
+	}
+
+	private List<Entry> match(List<Entry> candidates) {
+		List<Entry> result = new ArrayList<Entry>(candidates.size());
+		for (Entry entry : candidates) {
+			if (pattern.matches(entry.key)) {
+				result.add(entry);
+			}
+		}
+		return result;
+	}
+
+	private void fireChanged(int oldSize) {
+		int newSize = visible.size();
+		if (newSize < oldSize) {
+			fireIntervalRemoved(this, newSize, oldSize - 1);
+		} else if (newSize > oldSize) {
+			fireIntervalAdded(this, oldSize, newSize - 1);
+		}
+		int changed = Math.min(oldSize, newSize);
+		if (changed > 0) {
+			fireContentsChanged(this, 0, changed - 1);
+		}
+	}
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.gui;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.service.log.LogService;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+import com.github.nfalco79.junit4osgi.registry.spi.TestRegistry;
+import com.github.nfalco79.junit4osgi.runner.internal.JUnitRunner;
+
+public class RunnerServiceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test(timeout = 10000)
+	public void execute_completes_when_no_test_is_found() throws Exception {
+		TestRegistry registry = mock(TestRegistry.class);
+		when(registry.getTests(any(String[].class))).thenReturn(Collections.<TestBean> emptySet());
+
+		JUnitRunner runner = new JUnitRunner();
+		runner.setLog(mock(LogService.class));
+		runner.setRegistry(registry);
+
+		RunnerService service = new RunnerService(runner);
+		assertTrue(service.execute(new String[] { "uninstalled@org.example.MissingTest" }, folder.getRoot().getAbsolutePath(), null));
+		assertFalse("Runner still running", service.isRunning());
+	}
+
+}
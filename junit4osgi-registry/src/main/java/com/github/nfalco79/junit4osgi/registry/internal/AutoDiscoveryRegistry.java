@@ -15,8 +15,10 @@
  */
 package com.github.nfalco79.junit4osgi.registry.internal;
 
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.osgi.framework.Bundle;
@@ -24,6 +26,7 @@ import org.osgi.framework.Bundle;
 import com.github.nfalco79.junit4osgi.registry.internal.asm.BundleTestClassVisitor;
 import com.github.nfalco79.junit4osgi.registry.spi.AbstractTestRegistry;
 import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+import com.github.nfalco79.junit4osgi.registry.spi.TestDependencyIndex;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent.TestRegistryEventType;
 import com.j256.simplejmx.common.JmxAttributeMethod;
@@ -72,6 +75,8 @@ public final class AutoDiscoveryRegistry extends AbstractTestRegistry {
 
 		final Set<TestBean> bundleTest = new LinkedHashSet<TestBean>();
 		tests.put(bundle, bundleTest);
+		// listeners are notified once the whole bundle has been visited
+		final List<TestRegistryEvent> events = new ArrayList<TestRegistryEvent>();
 
 		navigate(bundle, "/", new EntryPathsVisitor() {
 			@Override
@@ -87,7 +92,7 @@ public final class AutoDiscoveryRegistry extends AbstractTestRegistry {
 					if (isTestClass(bundle, bean, visitor)) {
 						bundleTest.add(bean);
 
-						fireEvent(new TestRegistryEvent(TestRegistryEventType.ADD, bean));
+						events.add(new TestRegistryEvent(TestRegistryEventType.ADD, bean));
 					}
 				}
 			}
@@ -97,6 +102,7 @@ public final class AutoDiscoveryRegistry extends AbstractTestRegistry {
 				return entryPath.endsWith(".class");
 			}
 		});
+		fireEvents(events);
 	}
 
 	private void navigate(Bundle bundle, String path, EntryPathsVisitor visitor) {
@@ -150,9 +156,15 @@ public final class AutoDiscoveryRegistry extends AbstractTestRegistry {
 	public void removeTests(Bundle contributor) {
 		Set<TestBean> bundleTests = tests.remove(contributor);
 		if (bundleTests != null) {
+			TestDependencyIndex dependencyIndex = getDependencyIndex();
+			List<TestRegistryEvent> events = new ArrayList<TestRegistryEvent>(bundleTests.size());
 			for (TestBean test : bundleTests) {
-				fireEvent(new TestRegistryEvent(TestRegistryEventType.REMOVE, test));
+				if (dependencyIndex != null) {
+					dependencyIndex.remove(test);
+				}
+				events.add(new TestRegistryEvent(TestRegistryEventType.REMOVE, test));
 			}
+			fireEvents(events);
 		}
 	}
 
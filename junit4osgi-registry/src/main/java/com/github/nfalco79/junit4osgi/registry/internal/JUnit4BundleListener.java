@@ -20,6 +20,8 @@ import org.osgi.framework.BundleEvent;
 import org.osgi.framework.BundleListener;
 
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistry;
+import com.github.nfalco79.junit4osgi.registry.trace.TraceEvent;
+import com.github.nfalco79.junit4osgi.registry.trace.Tracer;
 
 public class JUnit4BundleListener implements BundleListener {
 	private TestRegistry registry;
@@ -64,7 +66,13 @@ public class JUnit4BundleListener implements BundleListener {
 	}
 
 	private void registerTestCase(Bundle bundle) {
-		getRegistry().registerTests(bundle);
+		Tracer tracer = Tracer.getInstance();
+		long startTime = tracer.start();
+		try {
+			getRegistry().registerTests(bundle);
+		} finally {
+			tracer.end(TraceEvent.DISCOVERY, bundle.getSymbolicName(), startTime);
+		}
 	}
 
 	/* package */TestRegistry getRegistry() {
@@ -19,7 +19,9 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.jar.Manifest;
@@ -92,6 +94,7 @@ public final class ManifestRegistry extends AbstractTestRegistry {
 			if (value != null && !"".equals(value)) {
 				BundleTestClassVisitor visitor = new BundleTestClassVisitor(bundle);
 				visitor.setLog(getLog());
+				List<TestRegistryEvent> events = new ArrayList<TestRegistryEvent>();
 
 				StringTokenizer st = new StringTokenizer(value, ",");
 				while (st.hasMoreTokens()) {
@@ -109,9 +112,10 @@ public final class ManifestRegistry extends AbstractTestRegistry {
 					if (isTestClass(bundle, bean, visitor)) {
 						bundleTest.add(bean);
 
-						fireEvent(new TestRegistryEvent(TestRegistryEventType.ADD, bean));
+						events.add(new TestRegistryEvent(TestRegistryEventType.ADD, bean));
 					}
 				}
+				fireEvents(events);
 			}
 		} catch (IOException e) {
 			getLog().log(LogService.LOG_ERROR, "Could not read MANIFEST of bundle " + symbolicName, e);
@@ -18,22 +18,47 @@ package com.github.nfalco79.junit4osgi.registry.internal.asm;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 
 public final class ASMUtils {
 
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+	private static final int CONSTANT_METHOD_TYPE = 16;
+
 	private ASMUtils() {
 		// default constructor
 	}
 
 	public static void analyseByteCode(URL entry, ClassVisitor visitor) {
+		analyseByteCode(entry, visitor, null);
+	}
+
+	/**
+	 * Visits the byte code of the given class and collects the classes
+	 * referenced by its constant pool.
+	 *
+	 * @param entry
+	 *            the class resource
+	 * @param visitor
+	 *            the visitor of the class
+	 * @param referencedClasses
+	 *            where add the internal names of referenced classes, could be
+	 *            {@code null}
+	 */
+	public static void analyseByteCode(URL entry, ClassVisitor visitor, Set<String> referencedClasses) {
 		InputStream is = null;
 		try {
 			is = entry.openStream();
 			if (is != null) {
 				ClassReader reader = new ClassReader(is);
+				if (referencedClasses != null) {
+					collectReferencedClasses(reader, referencedClasses);
+				}
 				reader.accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
 			}
 		} catch (IOException e) {
@@ -43,6 +68,81 @@ public final class ASMUtils {
 		}
 	}
 
+	/**
+	 * Returns the classes referenced by the constant pool of the given class
+	 * without visit it.
+	 *
+	 * @param entry
+	 *            the class resource
+	 * @return the internal names of referenced classes, the class itself is
+	 *         included
+	 */
+	public static Set<String> getReferencedClasses(URL entry) {
+		Set<String> referencedClasses = new HashSet<String>();
+		InputStream is = null;
+		try {
+			is = entry.openStream();
+			if (is != null) {
+				collectReferencedClasses(new ClassReader(is), referencedClasses);
+			}
+		} catch (IOException e) {
+			// skip class
+		} finally {
+			closeSilently(is);
+		}
+		return referencedClasses;
+	}
+
+	/*
+	 * Code is skipped by the visit but any class used in a method body has a
+	 * CONSTANT_Class entry, or appears in the descriptor of a field or method
+	 * it uses, so the constant pool is read directly. Types used only in the
+	 * declarations of the class are collected visiting them.
+	 */
+	private static void collectReferencedClasses(ClassReader reader, Set<String> referencedClasses) {
+		ReferenceCollector collector = new ReferenceCollector(referencedClasses);
+		char[] buffer = new char[reader.getMaxStringLength()];
+		for (int i = 1; i < reader.getItemCount(); i++) {
+			int offset = reader.getItem(i);
+			// the second slot of long and double entries has no offset
+			if (offset <= 0) {
+				continue;
+			}
+			switch (reader.readByte(offset - 1)) {
+			case CONSTANT_CLASS:
+				String className = toElementType(reader.readUTF8(offset, buffer));
+				if (className != null) {
+					referencedClasses.add(className);
+				}
+				break;
+			case CONSTANT_NAME_AND_TYPE:
+				collector.addDescriptor(reader.readUTF8(offset + 2, buffer));
+				break;
+			case CONSTANT_METHOD_TYPE:
+				collector.addDescriptor(reader.readUTF8(offset, buffer));
+				break;
+			default:
+				break;
+			}
+		}
+		reader.accept(collector, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+	}
+
+	/*
+	 * Array classes are referenced with their descriptor.
+	 */
+	private static String toElementType(String className) {
+		if (className.charAt(0) != '[') {
+			return className;
+		}
+		int index = className.lastIndexOf('[') + 1;
+		if (className.charAt(index) != 'L') {
+			// array of primitives
+			return null;
+		}
+		return className.substring(index + 1, className.length() - 1);
+	}
+
 	private static void closeSilently(InputStream is) {
 		if (is != null) {
 			try {
@@ -37,6 +37,7 @@ public class BundleTestClassVisitor extends ClassVisitor {
 	public static final String BUNDLE_ACTIVATION_POLICY = "Bundle-ActivationPolicy";
 
 	private Set<String> cache;
+	private Set<String> referencedClasses = new HashSet<String>();
 	private boolean testClass;
 	private boolean concreteClass;
 	private Bundle bundle;
@@ -109,7 +110,7 @@ public class BundleTestClassVisitor extends ClassVisitor {
 			}
 			if (entry != null) {
 				// analyse the superclass and add it to the cache only if super class has TestCase in the hierarchy
-				ASMUtils.analyseByteCode(entry, this);
+				analyse(entry);
 				// marks all subclasses of this as JUnit3 test case
 				if (cache.contains(superName)) {
 					cache.add(name);
@@ -160,6 +161,27 @@ public class BundleTestClassVisitor extends ClassVisitor {
 		return null;
 	}
 
+	/**
+	 * Visits the given class collecting also the classes referenced by its
+	 * constant pool and by the superclasses analysed through the byte code.
+	 *
+	 * @param entry
+	 *            the class resource
+	 */
+	public void analyse(URL entry) {
+		ASMUtils.analyseByteCode(entry, this, referencedClasses);
+	}
+
+	/**
+	 * Returns the internal names of the classes referenced by the classes
+	 * analysed since the last reset.
+	 *
+	 * @return the referenced classes
+	 */
+	public Set<String> getReferencedClasses() {
+		return referencedClasses;
+	}
+
 	public boolean isTestClass() {
 		return testClass && concreteClass;
 	}
@@ -167,6 +189,7 @@ public class BundleTestClassVisitor extends ClassVisitor {
 	public void reset() {
 		testClass = false;
 		concreteClass = false;
+		referencedClasses = new HashSet<String>();
 	}
 
 	public void setLog(LogService log) {
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.registry.internal.asm;
+
+import java.util.Set;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.signature.SignatureReader;
+import org.objectweb.asm.signature.SignatureVisitor;
+
+/**
+ * Collects the classes that appear only in the declarations of a class,
+ * like the type of a field, the parameters and the return type of a method,
+ * generic signatures and annotations, which have no CONSTANT_Class entry in
+ * the constant pool.
+ *
+ * @author Nikolas Falco
+ */
+class ReferenceCollector extends ClassVisitor {
+
+	private final class AnnotationCollector extends AnnotationVisitor {
+		AnnotationCollector() {
+			super(Opcodes.ASM6);
+		}
+
+		@Override
+		public void visit(String name, Object value) {
+			if (value instanceof Type) {
+				addType((Type) value);
+			}
+		}
+
+		@Override
+		public void visitEnum(String name, String desc, String value) {
+			addDescriptor(desc);
+		}
+
+		@Override
+		public AnnotationVisitor visitAnnotation(String name, String desc) {
+			addDescriptor(desc);
+			return this;
+		}
+
+		@Override
+		public AnnotationVisitor visitArray(String name) {
+			return this;
+		}
+	}
+
+	private final class SignatureCollector extends SignatureVisitor {
+		private String className;
+
+		SignatureCollector() {
+			super(Opcodes.ASM6);
+		}
+
+		@Override
+		public void visitClassType(String name) {
+			className = name;
+			referencedClasses.add(name);
+		}
+
+		@Override
+		public void visitInnerClassType(String name) {
+			className = className + '$' + name;
+			referencedClasses.add(className);
+		}
+	}
+
+	private final Set<String> referencedClasses;
+
+	ReferenceCollector(Set<String> referencedClasses) {
+		super(Opcodes.ASM6);
+		this.referencedClasses = referencedClasses;
+	}
+
+	@Override
+	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+		addSignature(signature);
+	}
+
+	@Override
+	public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+		addDescriptor(desc);
+		return new AnnotationCollector();
+	}
+
+	@Override
+	public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+		addDescriptor(desc);
+		addSignature(signature);
+		return new FieldVisitor(api) {
+			@Override
+			public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+				addDescriptor(desc);
+				return new AnnotationCollector();
+			}
+		};
+	}
+
+	@Override
+	public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+		addDescriptor(desc);
+		addSignature(signature);
+		return new MethodVisitor(api) {
+			@Override
+			public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+				addDescriptor(desc);
+				return new AnnotationCollector();
+			}
+
+			@Override
+			public AnnotationVisitor visitParameterAnnotation(int parameter, String desc, boolean visible) {
+				addDescriptor(desc);
+				return new AnnotationCollector();
+			}
+
+			@Override
+			public AnnotationVisitor visitAnnotationDefault() {
+				return new AnnotationCollector();
+			}
+		};
+	}
+
+	/**
+	 * Adds the classes of the given field or method descriptor.
+	 *
+	 * @param desc
+	 *            the descriptor
+	 */
+	void addDescriptor(String desc) {
+		if (desc.charAt(0) == '(') {
+			Type type = Type.getMethodType(desc);
+			for (Type argument : type.getArgumentTypes()) {
+				addType(argument);
+			}
+			addType(type.getReturnType());
+		} else {
+			addType(Type.getType(desc));
+		}
+	}
+
+	private void addType(Type type) {
+		if (type.getSort() == Type.ARRAY) {
+			type = type.getElementType();
+		}
+		if (type.getSort() == Type.OBJECT) {
+			referencedClasses.add(type.getInternalName());
+		} else if (type.getSort() == Type.METHOD) {
+			addDescriptor(type.getDescriptor());
+		}
+	}
+
+	private void addSignature(String signature) {
+		if (signature != null) {
+			new SignatureReader(signature).accept(new SignatureCollector());
+		}
+	}
+
+}
@@ -16,8 +16,10 @@
 package com.github.nfalco79.junit4osgi.registry.spi;
 
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -46,8 +48,16 @@ import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent.TestRegistr
  */
 public abstract class AbstractTestRegistry implements TestRegistry {
 
+	/**
+	 * Enables the index of the classes referenced by each test, used by the
+	 * runner to select the tests affected by a bundle update. Default is
+	 * false.
+	 */
+	public static final String DEPENDENCY_INDEX = "org.osgi.junit.registry.dependencyIndex";
+
 	private LogService log;
 	private JUnit4BundleListener bundleListener;
+	private final TestDependencyIndex dependencyIndex = Boolean.getBoolean(DEPENDENCY_INDEX) ? new TestDependencyIndex() : null;
 
 	protected final Set<TestRegistryChangeListener> listeners = new CopyOnWriteArraySet<TestRegistryChangeListener>();
 	protected final Map<Bundle, Set<TestBean>> tests = new ConcurrentHashMap<Bundle, Set<TestBean>>();
@@ -79,16 +89,50 @@ public abstract class AbstractTestRegistry implements TestRegistry {
 
 	protected void fireEvent(TestRegistryEvent event) {
 		for (TestRegistryChangeListener listener : listeners) {
-			try {
-				listener.registryChanged(event);
-			} catch (Exception t) {
-				getLog().log(LogService.LOG_INFO, "Listener " + listener.getClass() //
-					+ " fails on event " + event.getType() //
-					+ " for the test " + event.getTest().getId());
+			fireEvent(listener, event);
+		}
+	}
+
+	/**
+	 * Notifies all the given events to the listeners, a
+	 * {@link BatchTestRegistryChangeListener} is notified once for all
+	 * events.
+	 *
+	 * @param events
+	 *            the events caused by the same contributor
+	 */
+	protected void fireEvents(List<TestRegistryEvent> events) {
+		if (events.isEmpty()) {
+			return;
+		}
+
+		List<TestRegistryEvent> batch = Collections.unmodifiableList(events);
+		for (TestRegistryChangeListener listener : listeners) {
+			if (listener instanceof BatchTestRegistryChangeListener) {
+				try {
+					((BatchTestRegistryChangeListener) listener).registryChanged(batch);
+				} catch (Exception t) {
+					getLog().log(LogService.LOG_INFO, "Listener " + listener.getClass() //
+						+ " fails on a batch of " + batch.size() + " events");
+				}
+			} else {
+				for (TestRegistryEvent event : batch) {
+					fireEvent(listener, event);
+				}
 			}
 		}
 	}
 
+	private void fireEvent(TestRegistryChangeListener listener, TestRegistryEvent event) {
+		try {
+			listener.registryChanged(event);
+		} catch (Exception t) {
+			getLog().log(LogService.LOG_INFO, "Listener " + listener.getClass() //
+				+ " fails on event " + event.getType() //
+				+ " for the test " + event.getTest().getId());
+		}
+	}
+
 	protected boolean isTestClass(Bundle bundle, TestBean bean, BundleTestClassVisitor visitor) {
 		final String className = bean.getName();
 
@@ -102,6 +146,10 @@ public abstract class AbstractTestRegistry implements TestRegistry {
 			try {
 				Class<?> testClass = bean.getTestClass();
 				isTest = TestRegistryUtils.isValidTestClass(testClass);
+				if (isTest && dependencyIndex != null) {
+					URL entry = bundle.getEntry('/' + className.replace('.', '/') + ".class");
+					dependencyIndex.put(bean, ASMUtils.getReferencedClasses(entry));
+				}
 			} catch (ClassNotFoundException e) {
 				// could happen if some static code in the class fails
 				getLog().log(LogService.LOG_ERROR,
@@ -122,8 +170,11 @@ public abstract class AbstractTestRegistry implements TestRegistry {
 
 			// use classloader to introspect class
 			try {
-				ASMUtils.analyseByteCode(entry, visitor);
+				visitor.analyse(entry);
 				isTest = visitor.isTestClass();
+				if (isTest && dependencyIndex != null) {
+					dependencyIndex.put(bean, visitor.getReferencedClasses());
+				}
 			} catch (RuntimeException e) {
 				// could happen if some static code in the class fails
 				getLog().log(LogService.LOG_ERROR, "Test class '" + className + "' could not be found in the bundle " + symbolicName, e.getCause());
@@ -140,6 +191,19 @@ public abstract class AbstractTestRegistry implements TestRegistry {
 	@Override
 	public void dispose() {
 		tests.clear();
+		if (dependencyIndex != null) {
+			dependencyIndex.clear();
+		}
+	}
+
+	/**
+	 * Returns the index of the classes referenced by the registered tests.
+	 *
+	 * @return the dependency index or {@code null} if the index is not
+	 *         enabled
+	 */
+	public TestDependencyIndex getDependencyIndex() {
+		return dependencyIndex;
 	}
 
 	/*
@@ -174,9 +238,14 @@ public abstract class AbstractTestRegistry implements TestRegistry {
 	public void removeTests(Bundle contributor) {
 		Set<TestBean> bundleTests = tests.remove(contributor);
 		if (bundleTests != null) {
+			List<TestRegistryEvent> events = new ArrayList<TestRegistryEvent>(bundleTests.size());
 			for (TestBean test : bundleTests) {
-				fireEvent(new TestRegistryEvent(TestRegistryEventType.REMOVE, test));
+				if (dependencyIndex != null) {
+					dependencyIndex.remove(test);
+				}
+				events.add(new TestRegistryEvent(TestRegistryEventType.REMOVE, test));
 			}
+			fireEvents(events);
 		}
 	}
 
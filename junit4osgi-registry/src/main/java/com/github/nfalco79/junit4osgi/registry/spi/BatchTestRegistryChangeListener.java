@@ -0,0 +1,39 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.registry.spi;
+
+import java.util.List;
+
+/**
+ * A {@link TestRegistryChangeListener} notified once for all the changes
+ * caused by the same contributor bundle, instead of once for each test.
+ * <p>
+ * Registries that do not support batches notify each event through
+ * {@link #registryChanged(TestRegistryEvent)}.
+ *
+ * @author Nikolas Falco
+ */
+public interface BatchTestRegistryChangeListener extends TestRegistryChangeListener {
+
+	/**
+	 * Fires a batch of {@link TestRegistry} changes.
+	 *
+	 * @param events
+	 *            the {@link TestRegistryEvent}s in the order they happened
+	 */
+	void registryChanged(List<TestRegistryEvent> events);
+
+}
@@ -51,6 +51,15 @@ public class TestBean {
 		return className;
 	}
 
+	/**
+	 * Returns the bundle that contributes this test.
+	 *
+	 * @return the bundle that contains the test class
+	 */
+	public Bundle getBundle() {
+		return bundle;
+	}
+
 	public Class<?> getTestClass() throws ClassNotFoundException {
 		return bundle.loadClass(className);
 	}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.registry.spi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * Keeps for each test class the classes it references and the hash of their
+ * byte code at the time the test was indexed.
+ * <p>
+ * Class names are interned in a table shared by all tests, so each test
+ * keeps only an array of indexes and an array of hashes. Classes of the
+ * {@code java.*} packages are not recorded because they can not be updated.
+ * <p>
+ * Only the direct references of a test class (and of its superclasses
+ * analysed through the byte code) are known, a change in a class used
+ * transitively is not detected.
+ *
+ * @author Nikolas Falco
+ */
+public class TestDependencyIndex {
+
+	/** The hash of a class whose byte code could not be read. */
+	public static final long UNKNOWN = -1;
+
+	private static final class Entry {
+		private final int[] classes;
+		private final long[] hashes;
+
+		private Entry(int[] classes, long[] hashes) {
+			this.classes = classes;
+			this.hashes = hashes;
+		}
+	}
+
+	private final List<String> names = new ArrayList<String>();
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+	private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	/**
+	 * Records the given referenced classes for the test. The hashes are
+	 * computed on the byte code visible from the test bundle, if the bundle is
+	 * not resolved the hashes are unknown.
+	 *
+	 * @param test
+	 *            the test to index
+	 * @param referencedClasses
+	 *            the internal names of classes referenced by the test
+	 */
+	public void put(TestBean test, Collection<String> referencedClasses) {
+		Bundle bundle = test.getBundle();
+		boolean resolved = (bundle.getState() & (Bundle.RESOLVED | Bundle.STARTING | Bundle.ACTIVE | Bundle.STOPPING)) != 0;
+
+		List<String> classNames = new ArrayList<String>(referencedClasses.size());
+		for (String className : referencedClasses) {
+			if (!className.startsWith("java/")) {
+				classNames.add(className);
+			}
+		}
+
+		int[] classes = new int[classNames.size()];
+		long[] hashes = new long[classNames.size()];
+		for (int i = 0; i < classes.length; i++) {
+			String className = classNames.get(i);
+			classes[i] = intern(className);
+			hashes[i] = resolved ? hash(bundle.getResource(className + ".class")) : UNKNOWN;
+		}
+		entries.put(test.getId(), new Entry(classes, hashes));
+	}
+
+	/**
+	 * Removes the given test from the index.
+	 *
+	 * @param test
+	 *            the test to remove
+	 */
+	public void remove(TestBean test) {
+		entries.remove(test.getId());
+	}
+
+	/**
+	 * Returns if the given test has been indexed.
+	 *
+	 * @param test
+	 *            the test to check
+	 * @return {@code true} if the referenced classes of the test are known,
+	 *         {@code false} otherwise
+	 */
+	public boolean contains(TestBean test) {
+		return entries.containsKey(test.getId());
+	}
+
+	/**
+	 * Returns the classes referenced by the given test.
+	 *
+	 * @param test
+	 *            the indexed test
+	 * @return the fully qualified names of the referenced classes, empty if
+	 *         the test is not indexed
+	 */
+	public Set<String> getReferencedClasses(TestBean test) {
+		Set<String> classNames = new LinkedHashSet<String>();
+		Entry entry = entries.get(test.getId());
+		if (entry != null) {
+			for (int id : entry.classes) {
+				classNames.add(name(id).replace('/', '.'));
+			}
+		}
+		return classNames;
+	}
+
+	/**
+	 * Returns the packages referenced by the given test.
+	 *
+	 * @param test
+	 *            the indexed test
+	 * @return the names of the referenced packages, empty if the test is not
+	 *         indexed
+	 */
+	public Set<String> getReferencedPackages(TestBean test) {
+		Set<String> packages = new LinkedHashSet<String>();
+		for (String className : getReferencedClasses(test)) {
+			int index = className.lastIndexOf('.');
+			packages.add(index == -1 ? "" : className.substring(0, index));
+		}
+		return packages;
+	}
+
+	/**
+	 * Compares the recorded hashes of the classes referenced by the test with
+	 * the byte code of the same classes in the given updated bundle, classes
+	 * not contained in the bundle are not compared. The recorded hashes are
+	 * replaced so the next update is compared with this one.
+	 *
+	 * @param test
+	 *            the indexed test
+	 * @param updated
+	 *            the updated bundle
+	 * @return the fully qualified names of the changed classes, empty if the
+	 *         test is not indexed
+	 */
+	public Set<String> diff(TestBean test, Bundle updated) {
+		Set<String> changed = new LinkedHashSet<String>();
+		Entry entry = entries.get(test.getId());
+		if (entry == null) {
+			return changed;
+		}
+		synchronized (entry) {
+			for (int i = 0; i < entry.classes.length; i++) {
+				String className = name(entry.classes[i]);
+				URL resource = updated.getEntry('/' + className + ".class");
+				if (resource == null) {
+					continue;
+				}
+				long hash = hash(resource);
+				if (hash == UNKNOWN || hash != entry.hashes[i]) {
+					changed.add(className.replace('/', '.'));
+				}
+				entry.hashes[i] = hash;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Returns the number of indexed tests.
+	 *
+	 * @return the number of tests
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Removes all tests from the index.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	private synchronized int intern(String className) {
+		Integer id = ids.get(className);
+		if (id == null) {
+			id = names.size();
+			names.add(className);
+			ids.put(className, id);
+		}
+		return id;
+	}
+
+	private synchronized String name(int id) {
+		return names.get(id);
+	}
+
+	private static long hash(URL resource) {
+		if (resource == null) {
+			return UNKNOWN;
+		}
+		CRC32 crc = new CRC32();
+		InputStream is = null;
+		try {
+			is = resource.openStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				crc.update(buffer, 0, read);
+			}
+			return crc.getValue();
+		} catch (IOException e) {
+			return UNKNOWN;
+		} finally {
+			if (is != null) {
+				try {
+					is.close();
+				} catch (IOException e) {
+					// close silently
+				}
+			}
+		}
+	}
+
+}
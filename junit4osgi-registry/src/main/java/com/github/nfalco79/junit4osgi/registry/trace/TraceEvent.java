@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.registry.trace;
+
+/**
+ * The phases of the test pipeline recorded by the {@link Tracer}.
+ *
+ * @author Nikolas Falco
+ */
+public enum TraceEvent {
+	/**
+	 * Discovery of the tests contributed by a bundle.
+	 */
+	DISCOVERY,
+	/**
+	 * Number of tests waiting in the runner queue.
+	 */
+	QUEUE,
+	/**
+	 * Loading of a test class through its bundle.
+	 */
+	CLASS_LOADING,
+	/**
+	 * Execution of a test class by JUnit.
+	 */
+	EXECUTION,
+	/**
+	 * Execution of failed tests again.
+	 */
+	RERUN,
+	/**
+	 * Writing of a surefire report.
+	 */
+	REPORT
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.registry.trace;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An opt-in tracer of the test pipeline.
+ * <p>
+ * Each event is stored as a fixed number of longs in a ring buffer allocated
+ * once, so recording an event does not allocate and does not lock. When the
+ * buffer is full the oldest events are overwritten. The content of the buffer
+ * is written in the Chrome trace event format, that could be opened with
+ * chrome://tracing or Perfetto.
+ * <p>
+ * The tracer is enabled setting the system property {@value #TRACE_PATH} to
+ * the path of the trace file.
+ *
+ * @author Nikolas Falco
+ */
+public final class Tracer {
+
+	/**
+	 * The path on disk of the trace file, when not set tracing is disabled.
+	 */
+	public static final String TRACE_PATH = "org.osgi.junit.tracePath";
+	/**
+	 * The maximum number of events kept in memory.
+	 */
+	public static final String TRACE_BUFFER_SIZE = "org.osgi.junit.traceBufferSize";
+
+	private static final int DEFAULT_BUFFER_SIZE = 65536;
+	private static final int SLOT_SIZE = 4;
+	private static final long COUNTER = -1;
+
+	private static final Tracer INSTANCE = newTracer();
+
+	private final File file;
+	private final int capacity;
+	private final long[] buffer;
+	private final AtomicLong cursor = new AtomicLong();
+	private final long origin = System.nanoTime();
+
+	private final Map<String, Integer> detailIndex = new ConcurrentHashMap<String, Integer>();
+	private final List<String> details = new ArrayList<String>();
+	private final Map<Long, String> threadNames = new ConcurrentHashMap<Long, String>();
+
+	private static Tracer newTracer() {
+		String path = System.getProperty(TRACE_PATH);
+		return new Tracer(path != null ? new File(path) : null, Integer.getInteger(TRACE_BUFFER_SIZE, DEFAULT_BUFFER_SIZE));
+	}
+
+	/**
+	 * Returns the tracer configured through system properties.
+	 *
+	 * @return the shared tracer instance
+	 */
+	public static Tracer getInstance() {
+		return INSTANCE;
+	}
+
+	/* package */ Tracer(File file, int capacity) {
+		this.file = file;
+		this.capacity = file != null ? Math.max(capacity, 1) : 0;
+		this.buffer = new long[this.capacity * SLOT_SIZE];
+	}
+
+	/**
+	 * Returns if events are recorded.
+	 *
+	 * @return {@code true} if the tracer is enabled, {@code false} otherwise
+	 */
+	public boolean isEnabled() {
+		return capacity > 0;
+	}
+
+	/**
+	 * Returns the start time of an event.
+	 *
+	 * @return the current time in nanoseconds, 0 if the tracer is disabled
+	 */
+	public long start() {
+		return isEnabled() ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records an event that begun at the given time and ends now.
+	 *
+	 * @param event
+	 *            the pipeline phase
+	 * @param detail
+	 *            what is processed in the phase, like a test id, could be
+	 *            {@code null}
+	 * @param startTime
+	 *            the value returned by {@link #start()}
+	 */
+	public void end(TraceEvent event, String detail, long startTime) {
+		if (isEnabled()) {
+			record(event, detail, startTime, System.nanoTime() - startTime, 0);
+		}
+	}
+
+	/**
+	 * Records the value of a counter at the current time.
+	 *
+	 * @param event
+	 *            the pipeline phase
+	 * @param value
+	 *            of the counter
+	 */
+	public void count(TraceEvent event, long value) {
+		if (isEnabled()) {
+			record(event, null, System.nanoTime(), COUNTER, value);
+		}
+	}
+
+	private void record(TraceEvent event, String detail, long startTime, long duration, long value) {
+		Thread thread = Thread.currentThread();
+		long threadId = thread.getId();
+		if (!threadNames.containsKey(threadId)) {
+			threadNames.put(threadId, thread.getName());
+		}
+
+		int slot = (int) (cursor.getAndIncrement() % capacity) * SLOT_SIZE;
+		buffer[slot] = startTime - origin;
+		buffer[slot + 1] = duration;
+		buffer[slot + 2] = ((long) event.ordinal() << 56) | ((threadId & 0xFFFFFFL) << 32) | (intern(detail) & 0xFFFFFFFFL);
+		buffer[slot + 3] = value;
+	}
+
+	private int intern(String detail) {
+		if (detail == null) {
+			return -1;
+		}
+		Integer index = detailIndex.get(detail);
+		if (index == null) {
+			synchronized (details) {
+				index = detailIndex.get(detail);
+				if (index == null) {
+					index = details.size();
+					details.add(detail);
+					detailIndex.put(detail, index);
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Writes all events in the buffer to the trace file.
+	 * <p>
+	 * Events recorded while the file is written could be partially reported.
+	 *
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	public void flush() throws IOException {
+		if (!isEnabled()) {
+			return;
+		}
+
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("Cannot create the folder " + parent);
+		}
+
+		long last = cursor.get();
+		long first = Math.max(0, last - capacity);
+
+		Writer writer = null;
+		try {
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+			writer.write("{\"traceEvents\":[");
+			boolean separator = false;
+			for (Map.Entry<Long, String> thread : threadNames.entrySet()) {
+				if (separator) {
+					writer.write(',');
+				}
+				writer.write("\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + (thread.getKey() & 0xFFFFFFL) //
+						+ ",\"args\":{\"name\":\"" + escape(thread.getValue()) + "\"}}");
+				separator = true;
+			}
+			for (long i = first; i < last; i++) {
+				int slot = (int) (i % capacity) * SLOT_SIZE;
+				long header = buffer[slot + 2];
+				TraceEvent event = TraceEvent.values()[(int) (header >>> 56)];
+				long threadId = (header >>> 32) & 0xFFFFFFL;
+				int detail = (int) header;
+
+				if (separator) {
+					writer.write(',');
+				}
+				separator = true;
+				writer.write("\n{\"name\":\"" + event.name() + "\",\"cat\":\"junit4osgi\",\"pid\":1,\"tid\":" + threadId //
+						+ ",\"ts\":" + toMicros(buffer[slot]));
+				if (buffer[slot + 1] == COUNTER) {
+					writer.write(",\"ph\":\"C\",\"args\":{\"value\":" + buffer[slot + 3] + "}}");
+				} else {
+					writer.write(",\"ph\":\"X\",\"dur\":" + toMicros(buffer[slot + 1]));
+					if (detail >= 0) {
+						writer.write(",\"args\":{\"detail\":\"" + escape(getDetail(detail)) + "\"}");
+					}
+					writer.write('}');
+				}
+			}
+			writer.write("\n]}\n");
+		} finally {
+			if (writer != null) {
+				writer.close();
+			}
+		}
+	}
+
+	private String getDetail(int index) {
+		synchronized (details) {
+			return index < details.size() ? details.get(index) : "";
+		}
+	}
+
+	private static String toMicros(long nanos) {
+		return String.valueOf(nanos / 1000d);
+	}
+
+	private static String escape(String value) {
+		StringBuilder sb = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			default:
+				if (c < 0x20) {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+				break;
+			}
+		}
+		return sb.toString();
+	}
+
+}
@@ -21,6 +21,7 @@ import static org.mockito.Mockito.*;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.List;
 import java.util.Set;
 
 import org.example.GenericClass;
@@ -42,6 +43,7 @@ import org.osgi.service.log.LogService;
 
 import com.github.nfalco79.junit4osgi.registry.internal.util.BundleBuilder;
 import com.github.nfalco79.junit4osgi.registry.internal.util.BundleBuilder.URLStrategy;
+import com.github.nfalco79.junit4osgi.registry.spi.BatchTestRegistryChangeListener;
 import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryChangeListener;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent;
@@ -170,6 +172,47 @@ public class AutoDiscoveryRegistryTest {
 		registry.dispose();
 	}
 
+	@Test
+	public void test_batch_listener_event() throws Exception {
+		Bundle bundle = getMockBundle(SimpleTestCase.class, JUnit3Test.class).build();
+		BatchTestRegistryChangeListener listener = spy(BatchTestRegistryChangeListener.class);
+
+		AutoDiscoveryRegistry registry = new AutoDiscoveryRegistry();
+
+		registry.setLog(mock(LogService.class));
+		registry.addTestRegistryListener(listener);
+
+		registry.registerTests(bundle);
+
+		ArgumentCaptor<List<TestRegistryEvent>> argument = newEventsCaptor();
+		verify(listener).registryChanged(argument.capture());
+		verify(listener, never()).registryChanged(any(TestRegistryEvent.class));
+		List<TestRegistryEvent> events = argument.getValue();
+		assertThat(events, Matchers.hasSize(2));
+		for (TestRegistryEvent event : events) {
+			assertThat(event.getType(), Matchers.is(TestRegistryEventType.ADD));
+		}
+
+		reset(listener);
+
+		registry.removeTests(bundle);
+
+		argument = newEventsCaptor();
+		verify(listener).registryChanged(argument.capture());
+		events = argument.getValue();
+		assertThat(events, Matchers.hasSize(2));
+		for (TestRegistryEvent event : events) {
+			assertThat(event.getType(), Matchers.is(TestRegistryEventType.REMOVE));
+		}
+
+		registry.dispose();
+	}
+
+	@SuppressWarnings("unchecked")
+	private ArgumentCaptor<List<TestRegistryEvent>> newEventsCaptor() {
+		return ArgumentCaptor.forClass((Class<List<TestRegistryEvent>>) (Class<?>) List.class);
+	}
+
 	@Test
 	public void bundle_are_not_registered_twice() throws Exception {
 		Bundle bundle = getMockBundle(SimpleTestCase.class, JUnit3Test.class).build();
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.registry.internal.asm;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.net.URL;
+import java.util.List;
+import java.util.Set;
+
+import org.example.GenericClass;
+import org.example.ITest;
+import org.example.JUnit3Test;
+import org.example.MainClassTest;
+import org.example.MyServiceIT;
+import org.example.SimpleITTest;
+import org.example.hierarchy.AbstractJUnit3HierarchyTestCase;
+import org.example.hierarchy.JUnit3HierarchyBaseTestCase;
+import org.example.hierarchy.JUnit3HierarchyTestCase;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.osgi.framework.Bundle;
+
+import com.github.nfalco79.junit4osgi.registry.internal.util.BundleBuilder;
+
+public class ASMUtilsTest {
+
+	@Test
+	public void referenced_classes_include_code_and_array_types() throws Exception {
+		URL resource = getClass().getResource(BundleBuilder.toResource(getClass()));
+
+		Set<String> classes = ASMUtils.getReferencedClasses(resource);
+		assertThat(classes, hasItems("com/github/nfalco79/junit4osgi/registry/internal/asm/ASMUtilsTest", //
+				"org/example/GenericClass", //
+				"org/example/JUnit3Test"));
+		for (String className : classes) {
+			assertThat(className, not(startsWith("[")));
+		}
+	}
+
+	@Test
+	public void referenced_classes_include_declaration_types() throws Exception {
+		URL resource = getClass().getResource(BundleBuilder.toResource(Declarations.class));
+
+		Set<String> classes = ASMUtils.getReferencedClasses(resource);
+		assertThat(classes, hasItems("org/example/SimpleITTest", // field
+				"java/util/List", "org/example/MyServiceIT", // generic signature
+				"org/example/MainClassTest", "org/example/ITest", // method descriptor
+				"org/junit/runner/RunWith", "org/junit/runners/JUnit4")); // annotation
+	}
+
+	@Test
+	public void referenced_classes_include_descriptors_of_used_methods() throws Exception {
+		URL resource = getClass().getResource(BundleBuilder.toResource(Caller.class));
+
+		// the types of the invoked method are only in its descriptor
+		Set<String> classes = ASMUtils.getReferencedClasses(resource);
+		assertThat(classes, hasItems("org/example/MainClassTest", "org/example/ITest"));
+	}
+
+	@Test
+	public void visitor_collects_references_of_superclasses() throws Exception {
+		Bundle bundle = BundleBuilder.newBuilder() //
+				.symbolicName("acme") //
+				.manifestEntry(BundleTestClassVisitor.BUNDLE_ACTIVATION_POLICY, "lazy") //
+				.addClasses(JUnit3HierarchyTestCase.class, JUnit3HierarchyBaseTestCase.class, AbstractJUnit3HierarchyTestCase.class) //
+				.build();
+		URL resource = getClass().getResource(BundleBuilder.toResource(JUnit3HierarchyTestCase.class));
+
+		BundleTestClassVisitor visitor = new BundleTestClassVisitor(bundle);
+		visitor.analyse(resource);
+
+		assertThat(visitor.isTestClass(), is(true));
+		// only the abstract class references TestCase
+		assertThat(visitor.getReferencedClasses(), hasItem("junit/framework/TestCase"));
+
+		visitor.reset();
+		assertThat(visitor.getReferencedClasses(), empty());
+	}
+
+	/*
+	 * References used only in the code.
+	 */
+	@SuppressWarnings("unused")
+	private void references() {
+		new GenericClass();
+		JUnit3Test[][] tests = new JUnit3Test[1][1];
+	}
+
+	/*
+	 * References used only in declarations.
+	 */
+	@SuppressWarnings("unused")
+	@RunWith(JUnit4.class)
+	private abstract static class Declarations {
+		private SimpleITTest field;
+		private List<MyServiceIT> generic;
+
+		abstract MainClassTest returned(ITest parameter);
+	}
+
+	private static class Caller {
+		void call(Declarations declarations) {
+			declarations.returned(null);
+		}
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.registry.internal.spi;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import org.example.GenericClass;
+import org.example.JUnit3Test;
+import org.example.SimpleTestCase;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+import com.github.nfalco79.junit4osgi.registry.internal.util.BundleBuilder;
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+import com.github.nfalco79.junit4osgi.registry.spi.TestDependencyIndex;
+
+public class TestDependencyIndexTest {
+
+	@Test
+	public void referenced_classes_and_packages() throws Exception {
+		TestBean test = new TestBean(buildBundle(), SimpleTestCase.class.getName());
+
+		TestDependencyIndex index = new TestDependencyIndex();
+		assertFalse(index.contains(test));
+		index.put(test, Arrays.asList("org/example/SimpleTestCase", "org/example/GenericClass", "junit/framework/TestCase", "java/lang/Object"));
+
+		assertTrue(index.contains(test));
+		assertThat(index.getReferencedClasses(test), contains("org.example.SimpleTestCase", "org.example.GenericClass", "junit.framework.TestCase"));
+		assertThat(index.getReferencedPackages(test), contains("org.example", "junit.framework"));
+
+		index.remove(test);
+		assertFalse(index.contains(test));
+		assertThat(index.getReferencedClasses(test), empty());
+	}
+
+	@Test
+	public void diff_classes_of_updated_bundle() throws Exception {
+		Bundle bundle = buildBundle();
+		TestBean test = new TestBean(bundle, SimpleTestCase.class.getName());
+
+		TestDependencyIndex index = new TestDependencyIndex();
+		index.put(test, Arrays.asList("org/example/SimpleTestCase", "org/example/GenericClass", "org/example/JUnit3Test"));
+
+		// same byte code for GenericClass, a different one for JUnit3Test
+		Bundle updated = mock(Bundle.class);
+		when(updated.getEntry(BundleBuilder.toResource(GenericClass.class))).thenReturn(GenericClass.class.getResource(BundleBuilder.toResource(GenericClass.class)));
+		when(updated.getEntry(BundleBuilder.toResource(JUnit3Test.class))).thenReturn(GenericClass.class.getResource(BundleBuilder.toResource(GenericClass.class)));
+
+		assertThat(index.diff(test, updated), contains(JUnit3Test.class.getName()));
+		// hashes are replaced by the last diff
+		assertThat(index.diff(test, updated), empty());
+	}
+
+	@Test
+	public void unresolved_bundle_has_unknown_hashes() throws Exception {
+		Bundle bundle = BundleBuilder.newBuilder() //
+				.symbolicName("acme") //
+				.state(Bundle.INSTALLED) //
+				.addClasses(SimpleTestCase.class, GenericClass.class) //
+				.build();
+		TestBean test = new TestBean(bundle, SimpleTestCase.class.getName());
+
+		TestDependencyIndex index = new TestDependencyIndex();
+		index.put(test, Arrays.asList("org/example/GenericClass"));
+		verify(bundle, never()).getResource(anyString());
+
+		Bundle updated = mock(Bundle.class);
+		when(updated.getEntry(BundleBuilder.toResource(GenericClass.class))).thenReturn(GenericClass.class.getResource(BundleBuilder.toResource(GenericClass.class)));
+		assertThat(index.diff(test, updated), contains(GenericClass.class.getName()));
+	}
+
+	private Bundle buildBundle() throws Exception {
+		Bundle bundle = BundleBuilder.newBuilder() //
+				.symbolicName("acme") //
+				.addClasses(SimpleTestCase.class, GenericClass.class, JUnit3Test.class) //
+				.build();
+		for (Class<?> clazz : Arrays.<Class<?>> asList(SimpleTestCase.class, GenericClass.class, JUnit3Test.class)) {
+			String resource = BundleBuilder.toResource(clazz);
+			when(bundle.getResource(resource.substring(1))).thenReturn(clazz.getResource(resource));
+		}
+		return bundle;
+	}
+
+}
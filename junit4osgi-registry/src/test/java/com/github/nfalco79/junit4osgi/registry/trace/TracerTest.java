@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.registry.trace;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Scanner;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TracerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void disabled_tracer_does_not_record() throws Exception {
+		Tracer tracer = new Tracer(null, 10);
+		assertFalse(tracer.isEnabled());
+		assertEquals(0, tracer.start());
+		tracer.end(TraceEvent.EXECUTION, "test", 0);
+		tracer.flush();
+	}
+
+	@Test
+	public void write_chrome_trace() throws Exception {
+		File file = new File(folder.getRoot(), "trace/trace.json");
+		Tracer tracer = new Tracer(file, 2);
+
+		long startTime = tracer.start();
+		tracer.end(TraceEvent.DISCOVERY, "bundle", startTime);
+		tracer.count(TraceEvent.QUEUE, 5);
+		startTime = tracer.start();
+		tracer.end(TraceEvent.EXECUTION, "bundle@org.example.\"Quoted\"Test", startTime);
+		tracer.flush();
+
+		Scanner scanner = new Scanner(file, "UTF-8");
+		String trace = scanner.useDelimiter("\\A").next();
+		scanner.close();
+		assertThat(trace, startsWith("{\"traceEvents\":["));
+		// the oldest event has been overwritten
+		assertThat(trace, not(containsString("DISCOVERY")));
+		assertThat(trace, containsString("\"name\":\"QUEUE\""));
+		assertThat(trace, containsString("\"args\":{\"value\":5}"));
+		assertThat(trace, containsString("\"name\":\"EXECUTION\""));
+		assertThat(trace, containsString("org.example.\\\"Quoted\\\"Test"));
+		assertThat(trace, containsString("\"ph\":\"M\""));
+	}
+}
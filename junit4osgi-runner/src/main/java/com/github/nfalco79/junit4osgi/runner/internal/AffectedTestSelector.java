@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleRevisions;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+/**
+ * Selects the tests of the bundles that depend on an updated bundle.
+ * <p>
+ * A bundle depends on the updated one when it is wired to it through an
+ * Import-Package or a Require-Bundle. All the revisions of the updated
+ * bundle are inspected because until a refresh the dependent bundles are
+ * still wired to the previous revision.
+ *
+ * @author Nikolas Falco
+ */
+public class AffectedTestSelector {
+
+	private static final String[] NAMESPACES = { BundleRevision.PACKAGE_NAMESPACE, BundleRevision.BUNDLE_NAMESPACE };
+
+	private final TestFilter filter;
+	private final TestShard shard;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param filter
+	 *            the filter tests must match to be selected, could be
+	 *            {@code null}
+	 * @param shard
+	 *            the shard tests must belong to be selected, could be
+	 *            {@code null}
+	 */
+	public AffectedTestSelector(TestFilter filter, TestShard shard) {
+		this.filter = filter == null ? new TestFilter(null, null) : filter;
+		this.shard = shard == null ? new TestShard(0, 1, null) : shard;
+	}
+
+	/**
+	 * Returns the bundles wired to any revision of the given bundle.
+	 *
+	 * @param bundle
+	 *            the updated bundle
+	 * @return the dependent bundles, the given bundle is never included
+	 */
+	public Set<Bundle> getDependentBundles(Bundle bundle) {
+		Set<Bundle> dependents = new LinkedHashSet<Bundle>();
+
+		BundleRevisions revisions = bundle.adapt(BundleRevisions.class);
+		if (revisions == null) {
+			return dependents;
+		}
+		for (BundleRevision revision : revisions.getRevisions()) {
+			BundleWiring wiring = revision.getWiring();
+			if (wiring == null) {
+				// revision not resolved
+				continue;
+			}
+			for (String namespace : NAMESPACES) {
+				List<BundleWire> wires = wiring.getProvidedWires(namespace);
+				if (wires == null) {
+					// wiring no more in use
+					continue;
+				}
+				for (BundleWire wire : wires) {
+					Bundle requirer = wire.getRequirerWiring().getBundle();
+					if (!bundle.equals(requirer)) {
+						dependents.add(requirer);
+					}
+				}
+			}
+		}
+		return dependents;
+	}
+
+	/**
+	 * Selects among the given tests those contributed by a bundle that
+	 * depends on the updated bundle.
+	 *
+	 * @param bundle
+	 *            the updated bundle
+	 * @param tests
+	 *            the candidate tests
+	 * @return the affected tests in the same order of the candidates
+	 */
+	public List<TestBean> select(Bundle bundle, Collection<TestBean> tests) {
+		List<TestBean> affected = new ArrayList<TestBean>();
+
+		Set<Bundle> dependents = getDependentBundles(bundle);
+		if (dependents.isEmpty()) {
+			return affected;
+		}
+		for (TestBean test : tests) {
+			if (dependents.contains(test.getBundle()) && filter.accept(test.getName()) && shard.accept(test)) {
+				affected.add(test);
+			}
+		}
+		return affected;
+	}
+
+}
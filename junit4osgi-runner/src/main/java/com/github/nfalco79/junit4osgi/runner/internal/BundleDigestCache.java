@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * Keeps the content digest of the bundles across the runs, so the content
+ * of a bundle is read again only when it changes.
+ * <p>
+ * A digest is valid while the last modification time of the bundle is the
+ * same of when the digest was computed.
+ *
+ * @author Nikolas Falco
+ */
+public class BundleDigestCache {
+
+	private static final class Digest {
+		private final long lastModified;
+		private final byte[] value;
+
+		private Digest(long lastModified, byte[] value) {
+			this.lastModified = lastModified;
+			this.value = value;
+		}
+	}
+
+	private final Map<Long, Digest> digests = new ConcurrentHashMap<Long, Digest>();
+
+	/**
+	 * Returns the digest of the current content of the given bundle.
+	 *
+	 * @param bundle
+	 *            the bundle
+	 * @return the digest or {@code null} if it has not been computed or the
+	 *         bundle has been modified since
+	 */
+	public byte[] get(Bundle bundle) {
+		Digest digest = digests.get(bundle.getBundleId());
+		if (digest == null || digest.lastModified != bundle.getLastModified()) {
+			return null;
+		}
+		return digest.value;
+	}
+
+	/**
+	 * Stores the digest of the current content of the given bundle.
+	 *
+	 * @param bundle
+	 *            the bundle
+	 * @param digest
+	 *            the content digest
+	 */
+	public void put(Bundle bundle, byte[] digest) {
+		digests.put(bundle.getBundleId(), new Digest(bundle.getLastModified(), digest));
+	}
+
+	/**
+	 * Removes the digest of the given bundle.
+	 *
+	 * @param bundleId
+	 *            the bundle identifier
+	 */
+	public void remove(long bundleId) {
+		digests.remove(bundleId);
+	}
+
+	/**
+	 * Returns the number of bundle digests kept.
+	 *
+	 * @return the number of digests
+	 */
+	public int size() {
+		return digests.size();
+	}
+
+}
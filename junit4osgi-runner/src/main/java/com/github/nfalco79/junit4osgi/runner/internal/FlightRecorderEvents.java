@@ -0,0 +1,187 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+/**
+ * Emits Java Flight Recorder events for the test execution so that GC
+ * pauses, lock contention and other JVM events can be correlated with the
+ * running test.
+ * <p>
+ * The events are compiled only when the build is executed with the
+ * {@code jfr} profile because the {@code jdk.jfr} API is not available on
+ * Java 6 or older Java 8 updates. When the events have not been compiled
+ * or the running JVM does not provide Flight Recorder a no-op
+ * implementation is used.
+ *
+ * @author Nikolas Falco
+ */
+public abstract class FlightRecorderEvents {
+
+	public static final String PASSED = "passed";
+	public static final String FAILED = "failed";
+	public static final String ERROR = "error";
+	public static final String SKIPPED = "skipped";
+
+	/**
+	 * A started event that will be committed when ended.
+	 */
+	public interface Span {
+		/**
+		 * Ends and commits the event.
+		 *
+		 * @param outcome
+		 *            the result of the traced operation
+		 */
+		void end(String outcome);
+	}
+
+	private static final String IMPLEMENTATION = "com.github.nfalco79.junit4osgi.runner.internal.jfr.JfrEvents";
+
+	private static final Span NO_SPAN = new Span() {
+		@Override
+		public void end(String outcome) {
+			// nothing to commit
+		}
+	};
+
+	private static final FlightRecorderEvents NO_EVENTS = new FlightRecorderEvents() {
+		@Override
+		public boolean isEnabled() {
+			return false;
+		}
+
+		@Override
+		public Span testClassStarted(String testId) {
+			return NO_SPAN;
+		}
+
+		@Override
+		public Span testMethodStarted(String testId, String methodName) {
+			return NO_SPAN;
+		}
+
+		@Override
+		public Span rerunStarted(String testId, int attempt, int testCount) {
+			return NO_SPAN;
+		}
+
+		@Override
+		public Span reportStarted(String testId) {
+			return NO_SPAN;
+		}
+	};
+
+	private static final FlightRecorderEvents INSTANCE = load();
+
+	private static FlightRecorderEvents load() {
+		try {
+			Class<?> eventsClass = Class.forName(IMPLEMENTATION, true, FlightRecorderEvents.class.getClassLoader());
+			return (FlightRecorderEvents) eventsClass.newInstance();
+		} catch (ClassNotFoundException e) {
+			// built without the jfr profile
+		} catch (LinkageError e) {
+			// the JVM does not provide the jdk.jfr API
+		} catch (InstantiationException e) {
+			// fall back to no events
+		} catch (IllegalAccessException e) {
+			// fall back to no events
+		}
+		return NO_EVENTS;
+	}
+
+	/**
+	 * Returns the events implementation available in this JVM.
+	 *
+	 * @return the Flight Recorder events or a no-op instance if not
+	 *         supported
+	 */
+	public static FlightRecorderEvents getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the span that does nothing when ended.
+	 *
+	 * @return a no-op span
+	 */
+	protected static Span noSpan() {
+		return NO_SPAN;
+	}
+
+	/**
+	 * Returns the symbolic name of the bundle that contains the test.
+	 *
+	 * @param testId
+	 *            the test identifier in the form {@code bundle@className}
+	 * @return the bundle symbolic name or {@code null} if the identifier does
+	 *         not contain it
+	 */
+	protected static String getBundle(String testId) {
+		int index = testId == null ? -1 : testId.indexOf('@');
+		return index == -1 ? null : testId.substring(0, index);
+	}
+
+	/**
+	 * Returns if events are emitted or not.
+	 *
+	 * @return {@code true} if Flight Recorder events are supported,
+	 *         {@code false} otherwise
+	 */
+	public abstract boolean isEnabled();
+
+	/**
+	 * Starts the event of a test class execution.
+	 *
+	 * @param testId
+	 *            the test identifier
+	 * @return the started event
+	 */
+	public abstract Span testClassStarted(String testId);
+
+	/**
+	 * Starts the event of a test method execution.
+	 *
+	 * @param testId
+	 *            the test identifier
+	 * @param methodName
+	 *            the test method
+	 * @return the started event
+	 */
+	public abstract Span testMethodStarted(String testId, String methodName);
+
+	/**
+	 * Starts the event of a rerun attempt of failing tests.
+	 *
+	 * @param testId
+	 *            the test identifier
+	 * @param attempt
+	 *            one based number of the rerun attempt
+	 * @param testCount
+	 *            the number of tests to rerun
+	 * @return the started event
+	 */
+	public abstract Span rerunStarted(String testId, int attempt, int testCount);
+
+	/**
+	 * Starts the event of a report write.
+	 *
+	 * @param testId
+	 *            the test identifier
+	 * @return the started event
+	 */
+	public abstract Span reportStarted(String testId);
+
+}
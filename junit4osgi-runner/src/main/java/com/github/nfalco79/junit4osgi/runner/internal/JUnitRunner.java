@@ -16,29 +16,58 @@
 package com.github.nfalco79.junit4osgi.runner.internal;
 
 import java.io.File;
-import java.util.ArrayDeque;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.codehaus.plexus.util.FileUtils;
 import org.junit.runner.Description;
 import org.junit.runner.JUnitCore;
 import org.junit.runner.Request;
 import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
 import org.junit.runner.notification.RunListener;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
 import org.osgi.service.log.LogService;
 
 import com.github.nfalco79.junit4osgi.registry.TestRegistryUtils;
+import com.github.nfalco79.junit4osgi.registry.spi.AbstractTestRegistry;
+import com.github.nfalco79.junit4osgi.registry.spi.BatchTestRegistryChangeListener;
 import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+import com.github.nfalco79.junit4osgi.registry.spi.TestDependencyIndex;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistry;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryChangeListener;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent;
+import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent.TestRegistryEventType;
+import com.github.nfalco79.junit4osgi.registry.trace.TraceEvent;
+import com.github.nfalco79.junit4osgi.registry.trace.Tracer;
+import com.github.nfalco79.junit4osgi.runner.internal.FlightRecorderEvents.Span;
 import com.github.nfalco79.junit4osgi.runner.internal.jmx.JMXServer;
 import com.github.nfalco79.junit4osgi.runner.spi.TestRunner;
 import com.github.nfalco79.junit4osgi.runner.spi.TestRunnerNotifier;
@@ -49,11 +78,13 @@ import com.j256.simplejmx.common.JmxResource;
 
 @JmxResource(domainName = "org.osgi.junit4osgi", folderNames = "type=runner", beanName = "JUnitRunner", description = "The JUnit4 runner, executes JUnit3/4 test case in any OSGi bundle in the current system")
 public class JUnitRunner implements TestRunner {
-	private final class QueeueTestListener implements TestRegistryChangeListener {
+	private final class QueeueTestListener implements BatchTestRegistryChangeListener {
 		private final Queue<TestBean> tests;
+		private final Set<String> skipTests;
 
-		private QueeueTestListener(Queue<TestBean> tests) {
+		private QueeueTestListener(Queue<TestBean> tests, Set<String> skipTests) {
 			this.tests = tests;
+			this.skipTests = skipTests;
 		}
 
 		@Override
@@ -64,7 +95,10 @@ public class JUnitRunner implements TestRunner {
 			}
 			switch (event.getType()) {
 			case ADD:
-		        tests.add(testBean);
+				// a test already completed by the resumed run is skipped only once
+				if (!skipTests.remove(testBean.getId())) {
+					tests.add(testBean);
+				}
 				break;
 			case REMOVE:
 				tests.remove(testBean);
@@ -74,6 +108,56 @@ public class JUnitRunner implements TestRunner {
 				break;
 			}
 		}
+
+		@Override
+		public void registryChanged(List<TestRegistryEvent> events) {
+			List<TestBean> removed = new ArrayList<TestBean>();
+			for (TestRegistryEvent event : events) {
+				if (event.getType() == TestRegistryEventType.REMOVE && event.getTest() != null) {
+					removed.add(event.getTest());
+				} else {
+					// removes must be applied before an add of the same test
+					if (!removed.isEmpty()) {
+						tests.removeAll(removed);
+						removed.clear();
+					}
+					registryChanged(event);
+				}
+			}
+			if (!removed.isEmpty()) {
+				tests.removeAll(removed);
+			}
+		}
+	}
+
+	/*
+	 * Enqueues the tests of dependent bundles when a bundle is resolved
+	 * after an update, the content digest of an updated bundle is dropped.
+	 */
+	private final class UpdatedBundleListener implements BundleListener {
+		private final Set<Long> updatedBundles = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+		@Override
+		public void bundleChanged(BundleEvent event) {
+			Bundle bundle = event.getBundle();
+			switch (event.getType()) {
+			case BundleEvent.UPDATED:
+				updatedBundles.add(bundle.getBundleId());
+				bundleDigests.remove(bundle.getBundleId());
+				break;
+			case BundleEvent.RESOLVED:
+				if (updatedBundles.remove(bundle.getBundleId())) {
+					enqueueAffectedTests(bundle);
+				}
+				break;
+			case BundleEvent.UNINSTALLED:
+				updatedBundles.remove(bundle.getBundleId());
+				bundleDigests.remove(bundle.getBundleId());
+				break;
+			default:
+				break;
+			}
+		}
 	}
 
 	/**
@@ -83,17 +167,43 @@ public class JUnitRunner implements TestRunner {
 	/**
 	 * This property when set to true start this runner continually. This bundle
 	 * listen every time a bundle is started and new tests are found than those test
-	 * are executed.
+	 * are executed. If a checkpoint of an interrupted run is found in the reports
+	 * directory the run is resumed.
 	 */
 	public static final String RUNNER_AUTOSTART = "org.osgi.junit.runner.autostart";
 	/**
 	 * The path on disk where same the Surefire XML reports.
 	 */
 	public static final String REPORT_PATH = "org.osgi.junit.reportsPath";
+	/**
+	 * The compression of the Surefire XML reports, one of none, gzip or zstd.
+	 * Zstandard requires the zstd-jni codec installed in the framework,
+	 * otherwise gzip is used.
+	 */
+	public static final String REPORT_COMPRESSION = "org.osgi.junit.reportsCompression";
+	/**
+	 * When set to true the outcome of each test method is appended to a
+	 * journal in the reports directory. At the next start the reports of the
+	 * test classes interrupted by a crash are recovered from the journal.
+	 */
+	public static final String REPORT_JOURNAL = "org.osgi.junit.reportsJournal";
+	/**
+	 * When set to true a test class is skipped if its content hash, composed
+	 * by the test bundle and its wired bundles, matches the one of its last
+	 * green run. Skipped tests are reported with the skipped-cached message.
+	 * Only full runs use the cache, the tests requested explicitly are always
+	 * executed.
+	 */
+	public static final String RESULT_CACHE = "org.osgi.junit.resultCache";
 	/**
 	 * When a test case fails will be re run n-times how many are specified by this property.
 	 */
 	public static final String RERUN_COUNT = "org.osgi.junit.rerunFailingTestsCount";
+	/**
+	 * The time in milliseconds to wait before rerun failing tests, the time
+	 * doubles at each rerun attempt.
+	 */
+	public static final String RERUN_BACKOFF = "org.osgi.junit.rerunFailingTestsBackoff";
 	/**
 	 * A space or comma separate list of ant glob include patterns against each test
 	 * suite name have to matches.
@@ -104,8 +214,65 @@ public class JUnitRunner implements TestRunner {
 	 * suite name have to matches.
 	 */
 	public static final String PATH_EXCLUDE = "org.osgi.junit.exclude";
+	/**
+	 * The path on disk of the file where keep the history of test executions.
+	 * When set the elapsed time of each test is used to run the longest tests
+	 * first.
+	 */
+	public static final String HISTORY_PATH = "org.osgi.junit.historyPath";
+	/**
+	 * When set to true the tests that failed in the previous execution are
+	 * executed before all others. Requires the history path.
+	 */
+	public static final String FAILURES_FIRST = "org.osgi.junit.failuresFirst";
+	/**
+	 * A comma separated list of criteria used to order the tests in the
+	 * queue, the first has the highest precedence. Allowed values are
+	 * failures, duration, bundle and priority, the priority is declared in the
+	 * Test-Priority MANIFEST header of the test bundle. When not set tests are
+	 * ordered by duration, preceded by failures if failures first is enabled.
+	 */
+	public static final String TEST_ORDER = "org.osgi.junit.testOrder";
+	/**
+	 * Stops the execution of the tests in the queue after the specified number
+	 * of test failures.
+	 */
+	public static final String SKIP_AFTER_FAILURE_COUNT = "org.osgi.junit.skipAfterFailureCount";
+	/**
+	 * The message of the tests skipped because the failures count of the run
+	 * has been reached.
+	 */
+	public static final String SKIPPED_AFTER_FAILURES = "skipped-after-failures";
+	/**
+	 * The zero based index of the tests shard this runner have to execute.
+	 */
+	public static final String SHARD_INDEX = "org.osgi.junit.shardIndex";
+	/**
+	 * The total number of shards in which tests are split among runner
+	 * instances.
+	 */
+	public static final String SHARD_COUNT = "org.osgi.junit.shardCount";
+	/**
+	 * The path on disk of a test history file shared by all runner instances.
+	 * When set the elapsed times it contains are used to balance the shards,
+	 * the file is only read. When not set tests are split using a stable hash
+	 * of their identifier, the local history is never used because it differs
+	 * between instances.
+	 */
+	public static final String SHARD_DURATIONS = "org.osgi.junit.shardDurations";
+	/**
+	 * The maximum time in milliseconds a single test method could run before
+	 * the runner abandon it and continue with the next test class.
+	 */
+	public static final String TEST_TIMEOUT = "org.osgi.junit.testTimeout";
+	/**
+	 * The maximum time in milliseconds a test class could run before the
+	 * runner abandon it and continue with the next test class.
+	 */
+	public static final String CLASS_TIMEOUT = "org.osgi.junit.classTimeout";
 
 	private static final String DEFAULT_PATH_EXCLUDE = "junit.extensions.*";
+	private static final int JOURNAL_SYNC_BATCH = 16;
 
 	private TestRegistry registry;
 	private boolean stop;
@@ -113,14 +280,60 @@ public class JUnitRunner implements TestRunner {
 	LogService logger;
 	private TestRegistryChangeListener testListener;
 	private ScheduledThreadPoolExecutor executor;
+	private volatile ExecutorService worker;
+	private volatile Thread workerThread;
 	private Integer reRunCount;
+	private long rerunBackoff;
+	private int skipAfterFailureCount;
+	private final AtomicInteger runFailureCount = new AtomicInteger(0);
+	private boolean failuresFirst;
+	private List<TestOrder> testOrder;
+	private long testTimeout;
+	private long classTimeout;
 	private final File defaultReportsDirectory;
+	private ReportCompression reportCompression;
+	/*
+	 * Invalid settings found before the log service was bound.
+	 */
+	private final List<String> configurationWarnings = new ArrayList<String>();
+	private boolean reportJournal;
+	private boolean resultCache;
+	private final BundleDigestCache bundleDigests = new BundleDigestCache();
 	private final TestFilter testFilter;
 	private final AtomicInteger testCount = new AtomicInteger(0);
+	private final AtomicLong estimatedTime = new AtomicLong(0);
+	private final TestHistory history;
+	private final RunnerMetrics metrics = new RunnerMetrics();
+	private final Tracer tracer = Tracer.getInstance();
+	private final FlightRecorderEvents events = FlightRecorderEvents.getInstance();
+	private volatile TestShard shard;
+	private volatile String shardDurations;
+	private volatile RunCheckpoint checkpoint;
+	private volatile Queue<TestBean> autostartQueue;
+	private BundleContext bundleContext;
+	private BundleListener updateListener;
 
 	public JUnitRunner() {
 		defaultReportsDirectory = new File(System.getProperty(REPORT_PATH, "surefire-reports"));
+		try {
+			reportCompression = ReportCompression.parse(System.getProperty(REPORT_COMPRESSION));
+		} catch (IllegalArgumentException e) {
+			reportCompression = ReportCompression.NONE;
+			configurationWarnings.add(e.getMessage() + ", reports are not compressed");
+		}
+		reportJournal = Boolean.getBoolean(REPORT_JOURNAL);
+		resultCache = Boolean.getBoolean(RESULT_CACHE);
 		reRunCount = Integer.getInteger(RERUN_COUNT, 0);
+		rerunBackoff = Long.getLong(RERUN_BACKOFF, 0);
+		skipAfterFailureCount = Integer.getInteger(SKIP_AFTER_FAILURE_COUNT, 0);
+		failuresFirst = Boolean.getBoolean(FAILURES_FIRST);
+		try {
+			testOrder = TestOrder.parse(System.getProperty(TEST_ORDER));
+		} catch (IllegalArgumentException e) {
+			configurationWarnings.add(e.getMessage() + ", the default test order is used");
+		}
+		testTimeout = Long.getLong(TEST_TIMEOUT, 0);
+		classTimeout = Long.getLong(CLASS_TIMEOUT, 0);
 		stop = true;
 
 		String excludes = System.getProperty(PATH_EXCLUDE, DEFAULT_PATH_EXCLUDE).trim();
@@ -128,6 +341,11 @@ public class JUnitRunner implements TestRunner {
 		    excludes += "," + DEFAULT_PATH_EXCLUDE;
 		}
         testFilter = new TestFilter(System.getProperty(PATH_INCLUDES), excludes);
+
+		String historyPath = System.getProperty(HISTORY_PATH);
+		history = new TestHistory(historyPath != null ? new File(historyPath) : null);
+		shard = new TestShard(Integer.getInteger(SHARD_INDEX, 0), Integer.getInteger(SHARD_COUNT, 1), null);
+		shardDurations = System.getProperty(SHARD_DURATIONS);
 	}
 
 	/* (non-Javadoc)
@@ -194,16 +412,32 @@ public class JUnitRunner implements TestRunner {
 	        parameterNames = { "includePatterns", "excludePatterns", "reportsPath" }, //
 	        parameterDescriptions = { "includePatterns", "excludePatterns", "reportsPath" })
     public void start(String includePatterns, String excludePatterns, String reportsPath) {
+        start(includePatterns, excludePatterns, reportsPath, shard.getIndex(), shard.getCount());
+    }
+
+	@JmxOperation(description = "Start the tests of the given shard that matches the given patterns", //
+	        operationAction = OperationAction.ACTION, //
+	        parameterNames = { "includePatterns", "excludePatterns", "reportsPath", "shardIndex", "shardCount" }, //
+	        parameterDescriptions = { "includePatterns", "excludePatterns", "reportsPath", //
+	                "zero based index of the shard to execute", "total number of shards" })
+    public void start(String includePatterns, String excludePatterns, String reportsPath, int shardIndex, int shardCount) {
+        if (logger == null || registry == null) {
+            return;
+        }
+
+        // the shard is computed as the autostart run
+        TestShard testShard = newShard(shardIndex, shardCount);
+
         // collect all tests in the registry that matches patterns
         TestFilter filter = new TestFilter(includePatterns, excludePatterns);
 
-        Set<String> filteredTests = new LinkedHashSet<String>();
+        Set<String> testIds = new LinkedHashSet<String>();
         for (TestBean test : registry.getTests()) {
-            if (filter.accept(test.getName())) {
-                filteredTests.add(test.getId());
+            if (filter.accept(test.getName()) && testShard.accept(test)) {
+                testIds.add(test.getId());
             }
         }
-        start(filteredTests.toArray(new String[0]), reportsPath, null);
+        start(testIds.toArray(new String[0]), reportsPath, null);
     }
 
 	@JmxOperation(description = "Executes tests with the specified id collected by the JUnit registry", //
@@ -218,6 +452,18 @@ public class JUnitRunner implements TestRunner {
 
 	@Override
 	public void start(String[] testIds, String reportsPath, TestRunnerNotifier notifier) {
+		start(testIds, reportsPath, notifier, false);
+	}
+
+	@JmxOperation(description = "Resume the last full run of all registry tests, only the tests not yet completed are executed", //
+			operationAction = OperationAction.ACTION, //
+			parameterNames = { "reportsPath" }, //
+			parameterDescriptions = { "path on disk where the interrupted run saved surefire reports" })
+	public void resume(String reportsPath) {
+		start(null, reportsPath, null, true);
+	}
+
+	private void start(String[] testIds, String reportsPath, TestRunnerNotifier notifier, boolean resume) {
 		if (logger == null || registry == null) {
 			return;
 		}
@@ -230,17 +476,46 @@ public class JUnitRunner implements TestRunner {
 		}
 
 		if (!isRunning()) {
+			logConfigurationWarnings();
+			loadHistory();
+			runFailureCount.set(0);
+
+			if (!reportCompression.isAvailable()) {
+				logger.log(LogService.LOG_WARNING, "Report compression " + reportCompression + " is not available, " + reportCompression.orAvailable() + " is used");
+				reportCompression = reportCompression.orAvailable();
+			}
+			if (reportJournal) {
+				recoverJournal(reportsDirectory);
+			}
+
 			final Queue<TestBean> tests;
 			if (testIds == null) {
+				// freeze the shard assignment for the whole run
+				shard = newShard(shard.getIndex(), shard.getCount());
+				checkpoint = openCheckpoint(reportsDirectory, resume);
+				Set<String> completed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+				if (resume && checkpoint != null) {
+					completed.addAll(checkpoint.getCompleted());
+				}
+
 				// create a queue collecting all registry tests
-				tests = new FilteredTestQueue(testFilter);
-				testListener = new QueeueTestListener(tests);
+				tests = new PriorityTestQueue(testFilter, shard, history, getTestOrder());
+				testListener = new QueeueTestListener(tests, completed);
 				registry.addTestRegistryListener(testListener);
 
-				tests.addAll(registry.getTests());
+				for (TestBean test : registry.getTests()) {
+					if (!completed.remove(test.getId())) {
+						tests.add(test);
+					}
+				}
+				autostartQueue = tests;
 			} else {
+				// only full runs could be resumed
+				checkpoint = null;
+
 				// create a queue with only the specified tests
-				tests = new ArrayDeque<TestBean>(registry.getTests(testIds));
+				tests = new PriorityTestQueue(null, null, history, getTestOrder());
+				tests.addAll(registry.getTests(testIds));
 			}
 
 			stop = false;
@@ -285,14 +560,15 @@ public class JUnitRunner implements TestRunner {
 		return new Runnable() {
 			@Override
 			public void run() {
-				if (tests.isEmpty()) {
-				    testCount.set(0);
-					return;
-				}
-
 				try {
 					safeNotifier.start();
-					runTests(tests, reportsDirectory, safeNotifier);
+					if (tests.isEmpty()) {
+						// a single run must complete also when no test was found
+						testCount.set(0);
+						estimatedTime.set(0);
+					} else {
+						runTests(tests, reportsDirectory, safeNotifier, !singleRun);
+					}
 				} finally {
 					if (singleRun) {
 						running = false;
@@ -304,25 +580,61 @@ public class JUnitRunner implements TestRunner {
 		};
 	}
 
-	private void runTests(final Queue<TestBean> tests, final File reportsDirectory, TestRunnerNotifier notifier) {
+	private void runTests(final Queue<TestBean> tests, final File reportsDirectory, TestRunnerNotifier notifier, boolean fullRun) {
 		TestBean testBean;
+		final TestWatchdog watchdog = new TestWatchdog(classTimeout, testTimeout);
+		final ReportJournal journal = openJournal(reportsDirectory);
+		// a test requested explicitly must run even if unchanged
+		final TestResultCache cache = fullRun ? openResultCache(reportsDirectory) : null;
 		try {
 			RunListener customListener = null;
 			ReportListener reportListener = null;
-			JUnitCore core = new JUnitCore();
+			JUnitCore core = newJUnitCore(watchdog);
 
 			while (!isStopped() && (testBean = tests.poll()) != null) {
                 testCount.set(tests.size());
+                metrics.setQueueDepth(tests.size());
+                tracer.count(TraceEvent.QUEUE, tests.size());
+                estimatedTime.set(history.estimate(tests));
 				try {
-					Class<?> testClass = testBean.getTestClass();
+					long loadTime = tracer.start();
+					final Class<?> testClass;
+					try {
+						testClass = testBean.getTestClass();
+					} finally {
+						tracer.end(TraceEvent.CLASS_LOADING, testBean.getId(), loadTime);
+					}
 					if (!TestRegistryUtils.isValidTestClass(testClass)) {
 					    logger.log(LogService.LOG_DEBUG, "Skip class " + testBean.getName());
 						continue;
 					}
 
+					if (isSkipAfterFailure() && runFailureCount.get() >= skipAfterFailureCount) {
+						// not checkpointed so a resumed run executes it
+						logger.log(LogService.LOG_INFO, "Skip test " + testBean.getId() + " because " + runFailureCount.get() + " failures has been reached");
+						Description description = Request.aClass(testClass).getRunner().getDescription();
+						new XMLReport(reportsDirectory, reportCompression).generateReport(Report.newSkippedReport(description, SKIPPED_AFTER_FAILURES));
+						continue;
+					}
+
+					String hash = null;
+					if (cache != null) {
+						hash = cache.hash(testBean);
+						if (cache.isGreen(testBean.getId(), hash)) {
+							logger.log(LogService.LOG_INFO, "Skip test " + testBean.getId() + " unchanged since its last green run");
+							Description description = Request.aClass(testClass).getRunner().getDescription();
+							new XMLReport(reportsDirectory, reportCompression).generateReport(TestResultCache.newSkippedReport(description));
+							checkpoint(testBean.getId(), false);
+							continue;
+						}
+					}
+
 					// initialise the report listener
-					reportListener = new ReportListener();
+					reportListener = new ReportListener(testBean.getId(), journal);
 					core.addListener(reportListener);
+					if (journal != null) {
+						journal.classStarted(testBean.getId(), testClass.getName());
+					}
 
 					customListener = notifier.getRunListener();
 					if (customListener != null) {
@@ -330,16 +642,68 @@ public class JUnitRunner implements TestRunner {
 					}
 
 					logger.log(LogService.LOG_INFO, "Running test " + testBean.getId());
-					Request request = Request.classes(testClass);
-					Result result = core.run(request);
+					AtomicBoolean abandoned = new AtomicBoolean();
+					Future<Result> future = getWorker().submit(newTestTask(core, reportListener, watchdog, abandoned, testBean.getId(), testClass));
+					try {
+						awaitTest(future, watchdog);
+					} catch (TimeoutException e) {
+						TestTimeoutException timeout = watchdog.newTimeoutException();
+						logger.log(LogService.LOG_ERROR, timeout.getMessage() + ", abandon the worker thread");
+
+						// detach listeners and stop reruns so the stuck thread can
+						// not change the report anymore
+						abandoned.set(true);
+						core.removeListener(watchdog);
+						core.removeListener(metrics);
+						core.removeListener(reportListener);
+						if (customListener != null) {
+							core.removeListener(customListener);
+						}
 
-					if (isRerunFailingTests() && !result.wasSuccessful()) {
-						rerunTests(core, reportListener);
+						Description description = watchdog.getCurrentTest();
+						if (description == null) {
+							description = Description.createTestDescription(testClass, "classTimeout");
+						}
+						reportListener.testRunAborted(new Failure(description, timeout));
+
+						// continue with the next test on a fresh worker
+						abandonWorker(future);
+						core = newJUnitCore(watchdog);
+					} catch (ExecutionException e) {
+						logger.log(LogService.LOG_ERROR, "Failure running test " + testBean.getId(), e.getCause());
 					}
 
 					// write test result
-					final XMLReport xmlReport = new XMLReport(reportsDirectory);
-					xmlReport.generateReport(reportListener.getReport());
+					final Report report = reportListener.getReport();
+					final XMLReport xmlReport = new XMLReport(reportsDirectory, reportCompression);
+					metrics.reportQueued();
+					Span reportSpan = events.reportStarted(testBean.getId());
+					String reportOutcome = FlightRecorderEvents.ERROR;
+					try {
+						xmlReport.generateReport(report);
+						reportOutcome = FlightRecorderEvents.PASSED;
+					} finally {
+						reportSpan.end(reportOutcome);
+						metrics.reportWritten();
+					}
+					if (journal != null) {
+						journal.classFinished(testBean.getId());
+					}
+
+					history.setElapsedTime(testBean.getId(), TimeUnit.NANOSECONDS.toMillis(report.getElapsedNanos()));
+
+					Collection<Description> failures = reportListener.getFailures();
+					history.setFailed(testBean.getId(), !failures.isEmpty());
+					checkpoint(testBean.getId(), !failures.isEmpty());
+					if (cache != null) {
+						// a class that did not run at all is never cached
+						cache.setResult(testBean.getId(), hash, !failures.isEmpty() || report.getRunCount() == 0);
+					}
+					// the count is kept across the batches of the same run
+					int failureCount = runFailureCount.addAndGet(failures.size());
+					if (isSkipAfterFailure() && failureCount >= skipAfterFailureCount && failureCount - failures.size() < skipAfterFailureCount) {
+						logger.log(LogService.LOG_WARNING, "Skip remaining " + tests.size() + " tests in the queue because " + failureCount + " failures has been reached");
+					}
 				} catch (ClassNotFoundException e) {
 					logger.log(LogService.LOG_ERROR, "Cannot load class " + testBean.getId(), e);
 				} catch (NoClassDefFoundError e) {
@@ -354,23 +718,338 @@ public class JUnitRunner implements TestRunner {
 				}
 			}
 
+			metrics.setQueueDepth(0);
+			if (!isStopped()) {
+				completeCheckpoint();
+			}
 			logger.log(LogService.LOG_INFO, "All tests in the queue has been processed");
+		} catch (InterruptedException e) {
+			logger.log(LogService.LOG_INFO, "Runner has been interrupted");
+			Thread.currentThread().interrupt();
 		} catch (Exception e) {
 			logger.log(LogService.LOG_ERROR, null, e);
+		} finally {
+			abandonWorker(null);
+			closeJournal(journal);
+			storeResultCache(cache);
+			storeHistory();
+			flushTrace();
+		}
+	}
+
+	private void flushTrace() {
+		try {
+			tracer.flush();
+		} catch (IOException e) {
+			logger.log(LogService.LOG_WARNING, "Cannot write the trace file", e);
+		}
+	}
+
+	private JUnitCore newJUnitCore(TestWatchdog watchdog) {
+		JUnitCore core = new JUnitCore();
+		core.addListener(watchdog);
+		core.addListener(metrics);
+		return core;
+	}
+
+	private Callable<Result> newTestTask(final JUnitCore core, final ReportListener reportListener, final TestWatchdog watchdog, final AtomicBoolean abandoned, final String testId, final Class<?> testClass) {
+		return new Callable<Result>() {
+			@Override
+			public Result call() throws Exception {
+				watchdog.start();
+				metrics.testClassStarted(testId);
+				Span classSpan = events.testClassStarted(testId);
+				String outcome = FlightRecorderEvents.ERROR;
+				try {
+					long startTime = tracer.start();
+					Request request = Request.classes(testClass);
+					Result result = core.run(request);
+					tracer.end(TraceEvent.EXECUTION, testId, startTime);
+
+					if (isRerunFailingTests() && !result.wasSuccessful() && !abandoned.get()) {
+						rerunTests(core, reportListener, abandoned);
+					}
+					outcome = reportListener.getFailures().isEmpty() ? FlightRecorderEvents.PASSED : FlightRecorderEvents.FAILED;
+					return result;
+				} finally {
+					classSpan.end(outcome);
+					metrics.testClassFinished();
+				}
+			}
+		};
+	}
+
+	/*
+	 * Waits the test execution until the watchdog says that a timeout is
+	 * expired.
+	 */
+	private Result awaitTest(Future<Result> future, TestWatchdog watchdog) throws InterruptedException, ExecutionException, TimeoutException {
+		if (!watchdog.isEnabled()) {
+			return future.get();
+		}
+
+		while (true) {
+			long remaining = watchdog.getRemainingTime();
+			if (remaining <= 0 && !future.isDone()) {
+				throw new TimeoutException();
+			}
+			try {
+				return future.get(Math.max(remaining, 1), TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				// the watchdog could have been restarted by a new test
+			}
+		}
+	}
+
+	private ExecutorService getWorker() {
+		if (worker == null) {
+			worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "JUnitRunner-worker");
+					// an abandoned worker must not prevent the JVM shutdown
+					thread.setDaemon(true);
+					workerThread = thread;
+					return thread;
+				}
+			});
+		}
+		return worker;
+	}
+
+	/*
+	 * Interrupts the worker thread, if it does not terminate is left as is
+	 * and a new one will be created for the next test. The statistics of the
+	 * old thread are removed because it will not run tests anymore.
+	 */
+	private void abandonWorker(Future<Result> future) {
+		if (future != null) {
+			future.cancel(true);
+		}
+		ExecutorService oldWorker = worker;
+		worker = null;
+		if (oldWorker != null) {
+			oldWorker.shutdownNow();
+		}
+		metrics.workerAbandoned(workerThread);
+		workerThread = null;
+	}
+
+	/*
+	 * Adds to the queue of the autostart run the tests of the bundles that
+	 * depend on the given updated bundle.
+	 */
+	private void enqueueAffectedTests(Bundle bundle) {
+		Queue<TestBean> tests = autostartQueue;
+		TestRegistry currentRegistry = registry;
+		if (tests == null || currentRegistry == null || isStopped()) {
+			return;
+		}
+
+		TestDependencyIndex index = null;
+		if (currentRegistry instanceof AbstractTestRegistry) {
+			index = ((AbstractTestRegistry) currentRegistry).getDependencyIndex();
+		}
+		int count = 0;
+		int unchanged = 0;
+		for (TestBean test : new AffectedTestSelector(testFilter, shard).select(bundle, currentRegistry.getTests())) {
+			// without the index all tests of dependent bundles are affected
+			if (index != null && index.contains(test) && index.diff(test, bundle).isEmpty()) {
+				unchanged++;
+				continue;
+			}
+			if (!tests.contains(test) && tests.add(test)) {
+				count++;
+			}
+		}
+		if (count > 0 || unchanged > 0) {
+			logger.log(LogService.LOG_INFO, "Bundle " + bundle.getSymbolicName() + " has been updated, enqueue " + count
+					+ " tests of dependent bundles, " + unchanged + " tests do not reference changed classes");
+		}
+	}
+
+	@JmxOperation(description = "Returns the tests of other bundles that are executed when the given bundle is updated", //
+			parameterNames = { "symbolicName" }, //
+			parameterDescriptions = { "the symbolic name of the bundle" })
+	public String[] previewAffectedTests(String symbolicName) {
+		Set<String> testIds = new LinkedHashSet<String>();
+		BundleContext context = bundleContext;
+		TestRegistry currentRegistry = registry;
+		if (context != null && currentRegistry != null && symbolicName != null) {
+			AffectedTestSelector selector = new AffectedTestSelector(testFilter, shard);
+			Set<TestBean> tests = currentRegistry.getTests();
+			for (Bundle bundle : context.getBundles()) {
+				if (symbolicName.equals(bundle.getSymbolicName())) {
+					for (TestBean test : selector.select(bundle, tests)) {
+						testIds.add(test.getId());
+					}
+				}
+			}
+		}
+		return testIds.toArray(new String[testIds.size()]);
+	}
+
+	private TestResultCache openResultCache(File reportsDirectory) {
+		if (!resultCache) {
+			return null;
+		}
+		TestResultCache cache = new TestResultCache(new File(reportsDirectory, TestResultCache.FILE_NAME), bundleDigests);
+		try {
+			cache.load();
+		} catch (IOException e) {
+			logger.log(LogService.LOG_WARNING, "Cannot read the result cache, all tests will be executed", e);
+		}
+		return cache;
+	}
+
+	private void storeResultCache(TestResultCache cache) {
+		if (cache == null) {
+			return;
+		}
+		try {
+			cache.store();
+		} catch (IOException e) {
+			logger.log(LogService.LOG_WARNING, "Cannot write the result cache", e);
+		}
+	}
+
+	private RunCheckpoint openCheckpoint(File reportsDirectory, boolean resume) {
+		RunCheckpoint runCheckpoint = new RunCheckpoint(new File(reportsDirectory, RunCheckpoint.FILE_NAME));
+		if (resume) {
+			try {
+				runCheckpoint.load();
+				logger.log(LogService.LOG_INFO, "Resume the run skipping " + runCheckpoint.getCompleted().size() + " completed tests");
+			} catch (IOException e) {
+				logger.log(LogService.LOG_WARNING, "Cannot read the run checkpoint, all tests will be executed", e);
+			}
+		} else {
+			try {
+				runCheckpoint.reset();
+			} catch (IOException e) {
+				logger.log(LogService.LOG_WARNING, "Cannot reset the run checkpoint, this run could not be resumed", e);
+				return null;
+			}
+		}
+		return runCheckpoint;
+	}
+
+	private void checkpoint(String testId, boolean failed) {
+		RunCheckpoint runCheckpoint = checkpoint;
+		if (runCheckpoint == null) {
+			return;
+		}
+		try {
+			runCheckpoint.completed(testId, failed);
+		} catch (IOException e) {
+			logger.log(LogService.LOG_WARNING, "Cannot write the run checkpoint, this run could not be resumed", e);
+			checkpoint = null;
+		}
+	}
+
+	private void completeCheckpoint() {
+		RunCheckpoint runCheckpoint = checkpoint;
+		if (runCheckpoint == null || isSkipAfterFailure() && runFailureCount.get() >= skipAfterFailureCount) {
+			// tests skipped after failures are executed by a resumed run
+			return;
+		}
+		try {
+			// the run is complete, nothing has to be skipped by a later resume
+			runCheckpoint.reset();
+		} catch (IOException e) {
+			logger.log(LogService.LOG_WARNING, "Cannot delete the checkpoint of the completed run", e);
+		}
+	}
+
+	private ReportJournal openJournal(File reportsDirectory) {
+		if (!reportJournal) {
+			return null;
+		}
+		try {
+			return new ReportJournal(new File(reportsDirectory, ReportJournal.FILE_NAME), JOURNAL_SYNC_BATCH);
+		} catch (IOException e) {
+			logger.log(LogService.LOG_WARNING, "Cannot create the report journal", e);
+			return null;
+		}
+	}
+
+	private void closeJournal(ReportJournal journal) {
+		if (journal == null) {
+			return;
+		}
+		if (journal.getError() != null) {
+			logger.log(LogService.LOG_WARNING, "Cannot write the report journal", journal.getError());
+		}
+		try {
+			journal.close();
+		} catch (IOException e) {
+			logger.log(LogService.LOG_WARNING, "Cannot close the report journal", e);
+		}
+	}
+
+	/*
+	 * Writes the reports of the test classes interrupted during the previous
+	 * execution.
+	 */
+	private void recoverJournal(File reportsDirectory) {
+		File journalFile = new File(reportsDirectory, ReportJournal.FILE_NAME);
+		try {
+			for (Report report : ReportJournal.recover(journalFile)) {
+				logger.log(LogService.LOG_WARNING, "Recover the report of the interrupted test " + report.getDescription().getClassName());
+				new XMLReport(reportsDirectory, reportCompression).generateReport(report);
+			}
+			if (journalFile.isFile()) {
+				FileUtils.forceDelete(journalFile);
+			}
+		} catch (IOException e) {
+			logger.log(LogService.LOG_WARNING, "Cannot recover reports from the journal", e);
+		}
+	}
+
+	private void logConfigurationWarnings() {
+		synchronized (configurationWarnings) {
+			for (String warning : configurationWarnings) {
+				logger.log(LogService.LOG_WARNING, warning);
+			}
+			configurationWarnings.clear();
+		}
+	}
+
+	private void loadHistory() {
+		try {
+			history.load();
+		} catch (IOException e) {
+			logger.log(LogService.LOG_WARNING, "Cannot read the test history", e);
+		}
+	}
+
+	private void storeHistory() {
+		try {
+			history.store();
+		} catch (IOException e) {
+			logger.log(LogService.LOG_WARNING, "Cannot write the test history", e);
 		}
 	}
 
 	protected void rerunTests(final JUnitCore core, final ReportListener listener) {
+		rerunTests(core, listener, new AtomicBoolean());
+	}
+
+	/*
+	 * Reruns the failed tests until the runner abandons the execution, after
+	 * that the report listener is no more notified nor attached again.
+	 */
+	private void rerunTests(final JUnitCore core, final ReportListener listener, final AtomicBoolean abandoned) {
 		// remove the report listener in case of rerun, will be
 		// used a custom listener to avoid reset statistics
 		core.removeListener(listener);
 
-		RerunListenerWrapper reportListener = new RerunListenerWrapper(listener);
+		RerunListenerWrapper reportListener = new RerunListenerWrapper(listener, abandoned);
 		try {
 			core.addListener(reportListener);
 
-			Collection<Description> failedTests = listener.getFailures();
-			for (Description test : failedTests) {
+			// group failed methods by class to run them with a single request
+			Map<Class<?>, Set<Description>> failedTests = new LinkedHashMap<Class<?>, Set<Description>>();
+			for (Description test : listener.getFailures()) {
 				/*
 				 * a suite descriptor does not have a class valued, the
 				 * method getTestClass does not work in OSGi and JUnit does
@@ -386,17 +1065,59 @@ public class JUnitRunner implements TestRunner {
 					continue;
 				}
 
-				int runCount = reRunCount;
-				Result rerunResult = null;
-				while (runCount > 0 && (rerunResult == null || !rerunResult.wasSuccessful())) {
-					Request request = Request.classes(testClass).filterWith(test);
-					runCount--;
-					rerunResult = core.run(request);
+				Set<Description> methods = failedTests.get(testClass);
+				if (methods == null) {
+					methods = new LinkedHashSet<Description>();
+					failedTests.put(testClass, methods);
+				}
+				methods.add(test);
+			}
+
+			for (Entry<Class<?>, Set<Description>> entry : failedTests.entrySet()) {
+				Set<Description> methods = entry.getValue();
+				// the filter is backed by the set of methods still failing
+				Request request = Request.classes(entry.getKey()).filterWith(new TestMethodsFilter(methods));
+
+				int attempt = 0;
+				while (attempt < reRunCount && !methods.isEmpty()) {
+					if (!waitRerunBackoff(attempt) || abandoned.get()) {
+						return;
+					}
+					attempt++;
+					Span rerunSpan = events.rerunStarted(listener.getTestId(), attempt, methods.size());
+					long startTime = tracer.start();
+					core.run(request);
+					tracer.end(TraceEvent.RERUN, entry.getKey().getName(), startTime);
+
+					for (Iterator<Description> it = methods.iterator(); it.hasNext();) {
+						if (listener.wasSuccess(it.next())) {
+							it.remove();
+						}
+					}
+					rerunSpan.end(methods.isEmpty() ? FlightRecorderEvents.PASSED : FlightRecorderEvents.FAILED);
 				}
 			}
 		} finally {
 			core.removeListener(reportListener);
-			core.addListener(listener);
+			if (!abandoned.get()) {
+				core.addListener(listener);
+			}
+		}
+	}
+
+	/*
+	 * Waits before a new rerun attempt, the wait time double at each attempt.
+	 */
+	private boolean waitRerunBackoff(int attempt) {
+		if (rerunBackoff <= 0 || attempt == 0) {
+			return true;
+		}
+		try {
+			Thread.sleep(rerunBackoff << Math.min(attempt - 1, 16));
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
 		}
 	}
 
@@ -407,6 +1128,7 @@ public class JUnitRunner implements TestRunner {
 	@JmxOperation(description = "Stop any active runner", operationAction = OperationAction.ACTION)
 	public void stop() {
 		stop = true;
+		autostartQueue = null;
 		if (registry != null && testListener != null) {
 			registry.removeTestRegistryListener(testListener);
 		}
@@ -414,6 +1136,10 @@ public class JUnitRunner implements TestRunner {
 		    running = false;
 			executor.shutdownNow();
 		}
+		ExecutorService currentWorker = worker;
+		if (currentWorker != null) {
+			currentWorker.shutdownNow();
+		}
 	}
 
 	/* (non-Javadoc)
@@ -439,6 +1165,11 @@ public class JUnitRunner implements TestRunner {
 	    return testCount.get();
 	}
 
+	@JmxAttributeMethod(description = "Returns the estimated time in milliseconds to complete the tests ready to be executed, based on the execution history")
+	public long getEstimatedTime() {
+		return estimatedTime.get();
+	}
+
 	public boolean accept(Class<?> testClass) {
 	    return testFilter.accept(testClass.getName());
 	}
@@ -451,29 +1182,159 @@ public class JUnitRunner implements TestRunner {
 		return reRunCount > 0;
 	}
 
+	public void setRerunBackoff(long backoff) {
+		this.rerunBackoff = backoff;
+	}
+
+	public void setSkipAfterFailureCount(int count) {
+		this.skipAfterFailureCount = count;
+	}
+
+	public boolean isSkipAfterFailure() {
+		return skipAfterFailureCount > 0;
+	}
+
+	public void setFailuresFirst(boolean failuresFirst) {
+		this.failuresFirst = failuresFirst;
+	}
+
+	public void setTestOrder(List<TestOrder> testOrder) {
+		this.testOrder = testOrder;
+	}
+
+	/*
+	 * Returns the configured test order, by default the longest tests first
+	 * optionally preceded by the failed ones.
+	 */
+	private List<TestOrder> getTestOrder() {
+		if (testOrder != null && !testOrder.isEmpty()) {
+			return testOrder;
+		}
+		return failuresFirst ? Arrays.asList(TestOrder.FAILURES, TestOrder.DURATION) : Arrays.asList(TestOrder.DURATION);
+	}
+
+	public void setTestTimeout(long timeout) {
+		this.testTimeout = timeout;
+	}
+
+	public void setClassTimeout(long timeout) {
+		this.classTimeout = timeout;
+	}
+
+	/**
+	 * Sets the shard of tests this runner executes when started without an
+	 * explicit list of tests.
+	 *
+	 * @param index
+	 *            zero based index of the shard
+	 * @param count
+	 *            total number of shards
+	 */
+	public void setShard(int index, int count) {
+		this.shard = new TestShard(index, count, null);
+	}
+
+	@JmxAttributeMethod(description = "Returns the shard of tests this runner executes")
+	public String getShard() {
+		return shard.toString();
+	}
+
+	/**
+	 * Sets the test history file shared by all runner instances used to
+	 * balance the shards by the duration of tests. It is applied from the
+	 * next start.
+	 *
+	 * @param path
+	 *            the path of the shared history file, if {@code null} tests
+	 *            are split by their identifier
+	 */
+	@JmxAttributeMethod(description = "Sets the path of the test history file shared by all runner instances used to balance shards, if empty tests are split by their identifier")
+	public void setShardDurations(String path) {
+		this.shardDurations = path == null || path.trim().length() == 0 ? null : path.trim();
+	}
+
+	@JmxAttributeMethod(description = "Returns the path of the test history file shared by all runner instances used to balance shards")
+	public String getShardDurations() {
+		return shardDurations;
+	}
+
+	/*
+	 * The split must be the same on every instance, only the shared
+	 * durations are used to balance shards.
+	 */
+	private TestShard newShard(int index, int count) {
+		String path = shardDurations;
+		if (path == null || count == 1) {
+			return new TestShard(index, count, null);
+		}
+		TestHistory durations = new TestHistory(new File(path));
+		try {
+			durations.load();
+		} catch (IOException e) {
+			logger.log(LogService.LOG_WARNING, "Cannot read the shard durations " + path + ", tests are split by their identifier", e);
+			durations = null;
+		}
+		return new TestShard(index, count, durations);
+	}
+
 	private JMXServer jmxServer = newJMXServer();
 
 	protected JMXServer newJMXServer() {
 		return new JMXServer();
 	}
 
+	/**
+	 * Activates the component listening for bundle updates to run the tests
+	 * of dependent bundles.
+	 *
+	 * @param bundleContext
+	 *            the context of this bundle
+	 */
+	public void activate(BundleContext bundleContext) {
+		this.bundleContext = bundleContext;
+		updateListener = new UpdatedBundleListener();
+		bundleContext.addBundleListener(updateListener);
+		activate();
+	}
+
 	public void activate() {
 		jmxServer.start();
 		jmxServer.register(this);
+		jmxServer.register(metrics);
 
 		if (Boolean.getBoolean(RUNNER_AUTOSTART)) {
-			start();
+			// a completed run removes its checkpoint, so an existing one was
+			// left by a run interrupted by a restart
+			if (new File(defaultReportsDirectory, RunCheckpoint.FILE_NAME).isFile()) {
+				resume(null);
+			} else {
+				start();
+			}
 		}
 	}
 
+	protected RunnerMetrics getMetrics() {
+		return metrics;
+	}
+
 	protected JMXServer getJMXServer() {
 		return jmxServer;
 	}
 
+	public void deactivate(BundleContext bundleContext) {
+		try {
+			bundleContext.removeBundleListener(updateListener);
+		} finally {
+			this.bundleContext = null;
+			deactivate();
+		}
+	}
+
 	public void deactivate() {
 		stop();
 
 		jmxServer.unregister(this);
+		jmxServer.unregister(metrics);
 		jmxServer.unregister(registry);
 		jmxServer.stop();
 	}
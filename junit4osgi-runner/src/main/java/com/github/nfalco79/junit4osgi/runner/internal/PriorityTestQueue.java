@@ -0,0 +1,262 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+/**
+ * A queue of tests ordered by a list of {@link TestOrder} that accepts only
+ * the tests matching the filter and belonging to the shard.
+ * <p>
+ * The ranks of a test are computed once when it is enqueued, tests with the
+ * same ranks are polled in insertion order. Tests are kept in a concurrent
+ * skip list indexed by a concurrent hash map, so add, poll and remove are
+ * O(log n) without a global lock and the same test is never enqueued twice.
+ * Iterators work on a snapshot of the queue.
+ *
+ * @author Nikolas Falco
+ */
+public class PriorityTestQueue extends AbstractQueue<TestBean> {
+
+	/*
+	 * The position of a test in the queue. The sequence makes each entry
+	 * unique and keeps the insertion order between tests with the same ranks.
+	 */
+	private static final class Entry implements Comparable<Entry> {
+		private final TestBean test;
+		private final long[] ranks;
+		private final long sequence;
+
+		Entry(TestBean test, long[] ranks, long sequence) {
+			this.test = test;
+			this.ranks = ranks;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			for (int i = 0; i < ranks.length; i++) {
+				if (ranks[i] != other.ranks[i]) {
+					return ranks[i] < other.ranks[i] ? -1 : 1;
+				}
+			}
+			return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+		}
+	}
+
+	private final TestFilter filter;
+	private final TestShard shard;
+	private final TestHistory history;
+	private final TestOrder[] orders;
+	private final ConcurrentSkipListSet<Entry> queue = new ConcurrentSkipListSet<Entry>();
+	private final ConcurrentMap<TestBean, Entry> entries = new ConcurrentHashMap<TestBean, Entry>();
+	private final AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * Creates a FIFO queue of the tests that match the given filter.
+	 *
+	 * @param filter
+	 *            the filter on the test class name, could be {@code null}
+	 */
+	public PriorityTestQueue(TestFilter filter) {
+		this(filter, null, null, Collections.<TestOrder> emptyList());
+	}
+
+	/**
+	 * Creates a queue of the tests that match the given filter and shard.
+	 *
+	 * @param filter
+	 *            the filter on the test class name, could be {@code null}
+	 * @param shard
+	 *            the shard of tests to accept, could be {@code null}
+	 * @param history
+	 *            the history of previous executions used to rank tests, could
+	 *            be {@code null}
+	 * @param orders
+	 *            the criteria used to order tests, the first has the highest
+	 *            precedence
+	 */
+	public PriorityTestQueue(TestFilter filter, TestShard shard, TestHistory history, List<TestOrder> orders) {
+		this.filter = filter == null ? new TestFilter(null, null) : filter;
+		this.shard = shard == null ? new TestShard(0, 1, null) : shard;
+		this.history = history == null ? new TestHistory(null) : history;
+		this.orders = orders.toArray(new TestOrder[orders.size()]);
+	}
+
+	private boolean accept(TestBean test) {
+		return filter.accept(test.getName()) && shard.accept(test);
+	}
+
+	/**
+	 * Inserts the given test if accepted and not already in the queue.
+	 *
+	 * @param test
+	 *            to enqueue
+	 * @return {@code true} if the test has been enqueued, {@code false}
+	 *         otherwise
+	 */
+	@Override
+	public boolean add(TestBean test) {
+		return offer(test);
+	}
+
+	@Override
+	public boolean offer(TestBean test) {
+		if (test == null) {
+			throw new NullPointerException();
+		}
+		return accept(test) && enqueue(test);
+	}
+
+	private boolean enqueue(TestBean test) {
+		long[] ranks = new long[orders.length];
+		for (int i = 0; i < orders.length; i++) {
+			ranks[i] = orders[i].rank(test, history);
+		}
+		Entry entry = new Entry(test, ranks, sequence.getAndIncrement());
+		if (entries.putIfAbsent(test, entry) != null) {
+			return false;
+		}
+		// if a remove has run in the meantime the entry is left orphan and
+		// discarded by poll
+		queue.add(entry);
+		return true;
+	}
+
+	@Override
+	public TestBean poll() {
+		Entry entry;
+		while ((entry = queue.pollFirst()) != null) {
+			if (entries.remove(entry.test, entry)) {
+				return entry.test;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public TestBean peek() {
+		for (Entry entry : queue) {
+			if (entries.get(entry.test) == entry) {
+				return entry.test;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		Entry entry = entries.remove(o);
+		if (entry == null) {
+			return false;
+		}
+		queue.remove(entry);
+		return true;
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		boolean modified = false;
+		for (Object o : c) {
+			modified |= remove(o);
+		}
+		return modified;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return entries.containsKey(o);
+	}
+
+	@Override
+	public int size() {
+		return entries.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	@Override
+	public void clear() {
+		entries.clear();
+		queue.clear();
+	}
+
+	/*
+	 * Tests are accepted one by one as offer does, so the shard assignment
+	 * does not depend on how the queue is filled.
+	 */
+	@Override
+	public boolean addAll(Collection<? extends TestBean> tests) {
+		boolean modified = false;
+		for (TestBean test : tests) {
+			modified |= offer(test);
+		}
+		return modified;
+	}
+
+	@Override
+	public Iterator<TestBean> iterator() {
+		final List<TestBean> tests = new ArrayList<TestBean>(entries.size());
+		for (Entry entry : queue) {
+			if (entries.get(entry.test) == entry) {
+				tests.add(entry.test);
+			}
+		}
+		final Iterator<TestBean> snapshot = tests.iterator();
+		return new Iterator<TestBean>() {
+			private TestBean current;
+
+			@Override
+			public boolean hasNext() {
+				return snapshot.hasNext();
+			}
+
+			@Override
+			public TestBean next() {
+				if (!snapshot.hasNext()) {
+					throw new NoSuchElementException();
+				}
+				current = snapshot.next();
+				return current;
+			}
+
+			@Override
+			public void remove() {
+				if (current == null) {
+					throw new IllegalStateException();
+				}
+				PriorityTestQueue.this.remove(current);
+				current = null;
+			}
+		};
+	}
+
+}
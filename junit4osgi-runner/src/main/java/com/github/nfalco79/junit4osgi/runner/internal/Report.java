@@ -1,31 +1,44 @@
 package com.github.nfalco79.junit4osgi.runner.internal;
 
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.runner.Description;
 import org.junit.runner.notification.Failure;
 
+/**
+ * The result of a test execution.
+ * <p>
+ * Reports are kept in memory until the XML is written so they do not
+ * retain the failure exception, the message and the stack trace are
+ * rendered when the failure is set. Captured output is kept as UTF-8 bytes.
+ */
 public class Report {
 
 	/* package */ enum FailureType {
 		IGNORE, FAILURE, ERROR, SUCCESS
 	}
 
+	private static final FailureType[] TYPES = FailureType.values();
+	private static final String UTF_8 = "UTF-8";
+
 	private final Description description;
 	private String message;
-	private double elapsedTime = 0d;
-	private Failure failure;
-	private String err;
-	private String out;
-	private FailureType type = FailureType.SUCCESS;
+	private long elapsedNanos;
+	private String failureMessage;
+	private String failureClass;
+	private String trace;
+	private byte[] err;
+	private byte[] out;
+	private byte type = (byte) FailureType.SUCCESS.ordinal();
 	private int runCount;
 
-	private Collection<Report> runs = new LinkedList<Report>();
-	private List<Report> children = new LinkedList<Report>();
+	private List<Report> runs;
+	private List<Report> children;
 
 	public Report(Description description) {
 		this.description = description;
@@ -34,14 +47,65 @@ public class Report {
 	public Report(Report report) {
 		this.description = report.description;
 		this.message = report.message;
-		this.elapsedTime = report.elapsedTime;
-		this.failure = report.failure;
+		this.elapsedNanos = report.elapsedNanos;
+		this.failureMessage = report.failureMessage;
+		this.failureClass = report.failureClass;
+		this.trace = report.trace;
 		this.err = report.err;
 		this.out = report.out;
 		this.type = report.type;
 		this.runCount = report.runCount;
-		this.runs.addAll(report.runs);
-		this.children.addAll(report.children);
+		if (report.runs != null) {
+			this.runs = new ArrayList<Report>(report.runs);
+		}
+		if (report.children != null) {
+			this.children = new ArrayList<Report>(report.children);
+		}
+	}
+
+	/*
+	 * Replaces the result of this report with the given execution, children
+	 * are kept.
+	 */
+	/* package */ void setExecution(Report execution, Collection<Report> otherRuns) {
+		this.message = execution.message;
+		this.elapsedNanos = execution.elapsedNanos;
+		this.failureMessage = execution.failureMessage;
+		this.failureClass = execution.failureClass;
+		this.trace = execution.trace;
+		this.err = execution.err;
+		this.out = execution.out;
+		this.type = execution.type;
+		this.runs = new ArrayList<Report>(otherRuns);
+		this.runCount = runs.size();
+	}
+
+	/**
+	 * Creates the report of a test class that has not been executed, each
+	 * test is reported as skipped with the given message.
+	 *
+	 * @param description
+	 *            the description of the test class
+	 * @param message
+	 *            the reason why the class has been skipped
+	 * @return the report of the skipped class
+	 */
+	public static Report newSkippedReport(Description description, String message) {
+		Report report = newSkippedNode(description, message);
+		report.setRunCount(description.testCount());
+		return report;
+	}
+
+	private static Report newSkippedNode(Description description, String message) {
+		Report node = new Report(description);
+		if (description.isTest()) {
+			node.markAsIgnored();
+			node.setMessage(message);
+		}
+		for (Description child : description.getChildren()) {
+			node.addChild(newSkippedNode(child, message));
+		}
+		return node;
 	}
 
 	public Description getDescription() {
@@ -56,57 +120,127 @@ public class Report {
 		this.message = message;
 	}
 
-	public Failure getFailure() {
-		return failure;
+	/**
+	 * Records the given failure, the exception is not retained.
+	 *
+	 * @param failure
+	 *            the cause of the test failure
+	 */
+	public void setFailure(Failure failure) {
+		Throwable exception = failure.getException();
+		type = (byte) (ReportListener.isFailure(failure) ? FailureType.FAILURE : FailureType.ERROR).ordinal();
+		failureMessage = failure.getMessage();
+		failureClass = exception != null ? exception.getClass().getName() : null;
+		trace = exception != null ? failure.getTrace() : null;
 	}
 
-	public void setFailure(Failure failure) {
-		this.failure = failure;
-		type = ReportListener.isFailure(failure) ? FailureType.FAILURE : FailureType.ERROR;
+	/*
+	 * Restores a result previously rendered by another report.
+	 */
+	/* package */ void setResult(FailureType type, String message, String failureMessage, String failureClass, String trace) {
+		this.type = (byte) type.ordinal();
+		this.message = message;
+		this.failureMessage = failureMessage;
+		this.failureClass = failureClass;
+		this.trace = trace;
+	}
+
+	/**
+	 * Returns if this execution has failed.
+	 *
+	 * @return {@code true} if a failure or an error has been recorded,
+	 *         {@code false} otherwise
+	 */
+	public boolean hasFailure() {
+		FailureType failureType = getType();
+		return failureType == FailureType.FAILURE || failureType == FailureType.ERROR;
+	}
+
+	public String getFailureMessage() {
+		return failureMessage;
+	}
+
+	/**
+	 * Returns the class name of the exception that caused the failure.
+	 *
+	 * @return the exception class name or {@code null} if unknown
+	 */
+	public String getFailureClass() {
+		return failureClass;
+	}
+
+	public String getTrace() {
+		return trace;
 	}
 
+	/**
+	 * Returns the elapsed time in seconds.
+	 *
+	 * @return the elapsed time
+	 */
 	public double getElapsedTime() {
-		return elapsedTime;
+		return elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
 	}
 
-	public void setElapsedTime(double elapsedTime) {
-		this.elapsedTime = elapsedTime;
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public void setElapsedNanos(long elapsedNanos) {
+		this.elapsedNanos = elapsedNanos;
 	}
 
 	@Override
 	public String toString() {
-		return description + " " + type;
+		return description + " " + getType();
 	}
 
 	public String getErr() {
-		return err;
+		return toString(err);
 	}
 
-	public void setErr(String err) {
+	public void setErr(byte[] err) {
 		this.err = err;
 	}
 
 	public String getOut() {
-		return out;
+		return toString(out);
 	}
 
-	public void setOut(String out) {
+	public void setOut(byte[] out) {
 		this.out = out;
 	}
 
+	private static String toString(byte[] bytes) {
+		if (bytes == null) {
+			return null;
+		}
+		try {
+			return new String(bytes, UTF_8);
+		} catch (UnsupportedEncodingException e) {
+			return new String(bytes);
+		}
+	}
+
 	public List<Report> getChildren() {
-		return Collections.unmodifiableList(children);
+		return children == null ? Collections.<Report> emptyList() : Collections.unmodifiableList(children);
 	}
 
 	public void addChild(Report child) {
+		if (children == null) {
+			children = new ArrayList<Report>(4);
+		}
 		this.children.add(child);
 	}
 
 	public Collection<Report> getRuns() {
-		return Collections.unmodifiableCollection(runs);
+		return runs == null ? Collections.<Report> emptyList() : Collections.unmodifiableCollection(runs);
 	}
 
 	public void addRun(Report run) {
+		if (runs == null) {
+			runs = new ArrayList<Report>(2);
+		}
 		runs.add(run);
 		runCount = runs.size();
 	}
@@ -120,21 +254,22 @@ public class Report {
 	}
 
 	public FailureType getType() {
-		return type;
+		return TYPES[type];
 	}
 
 	public void markAsIgnored() {
-		this.type = FailureType.IGNORE;
+		this.type = (byte) FailureType.IGNORE.ordinal();
 	}
 
 	public boolean isSuccess() {
-		final Iterator<Report> it = runs.iterator();
-		while (it.hasNext()) {
-			if (it.next().isSuccess()) {
-				return true;
+		if (runs != null) {
+			for (Report run : runs) {
+				if (run.isSuccess()) {
+					return true;
+				}
 			}
 		}
-		return failure == null;
+		return !hasFailure();
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The compression applied to the XML reports while they are written.
+ * <p>
+ * Zstandard is supported only when the zstd-jni codec is available to this
+ * bundle, it is loaded by reflection so it is not a required dependency.
+ *
+ * @author Nikolas Falco
+ */
+public enum ReportCompression {
+	NONE("") {
+		@Override
+		public OutputStream wrap(OutputStream os) {
+			return os;
+		}
+	},
+	GZIP(".gz") {
+		@Override
+		public OutputStream wrap(OutputStream os) throws IOException {
+			return new GZIPOutputStream(os, BUFFER_SIZE);
+		}
+	},
+	ZSTD(".zst") {
+		@Override
+		public OutputStream wrap(OutputStream os) throws IOException {
+			if (ZSTD_STREAM == null) {
+				throw new IOException("Zstandard codec is not available");
+			}
+			try {
+				return ZSTD_STREAM.newInstance(os);
+			} catch (InvocationTargetException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				throw new IOException("Cannot create the Zstandard stream", cause);
+			} catch (Exception e) {
+				throw new IOException("Cannot create the Zstandard stream", e);
+			}
+		}
+
+		@Override
+		public boolean isAvailable() {
+			return ZSTD_STREAM != null;
+		}
+	};
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final String ZSTD_STREAM_CLASS = "com.github.luben.zstd.ZstdOutputStream";
+	private static final Constructor<? extends OutputStream> ZSTD_STREAM = loadZstd();
+
+	private final String extension;
+
+	private ReportCompression(String extension) {
+		this.extension = extension;
+	}
+
+	private static Constructor<? extends OutputStream> loadZstd() {
+		try {
+			return Class.forName(ZSTD_STREAM_CLASS).asSubclass(OutputStream.class).getConstructor(OutputStream.class);
+		} catch (ClassNotFoundException e) {
+			return null;
+		} catch (NoSuchMethodException e) {
+			return null;
+		} catch (LinkageError e) {
+			// the jar is present but the native library could not be loaded
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the compression for the given value of the
+	 * {@link JUnitRunner#REPORT_COMPRESSION} property.
+	 *
+	 * @param value
+	 *            one of none, gzip or zstd, case insensitive. If {@code null}
+	 *            or empty no compression is used
+	 * @return the compression
+	 * @throws IllegalArgumentException
+	 *             if the value is not a known compression
+	 */
+	public static ReportCompression parse(String value) {
+		if (value == null || value.trim().length() == 0) {
+			return NONE;
+		}
+		try {
+			return valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("report compression must be one of none, gzip or zstd");
+		}
+	}
+
+	/**
+	 * Returns the suffix appended to the report file name.
+	 *
+	 * @return the file extension including the dot, empty if no compression
+	 *         is applied
+	 */
+	public String getExtension() {
+		return extension;
+	}
+
+	/**
+	 * Returns if this compression could be used in the current runtime.
+	 *
+	 * @return {@code true} if the codec is available, {@code false} otherwise
+	 */
+	public boolean isAvailable() {
+		return true;
+	}
+
+	/**
+	 * Returns this compression if available, otherwise gzip that is always
+	 * supported by the JRE.
+	 *
+	 * @return an available compression
+	 */
+	public ReportCompression orAvailable() {
+		return isAvailable() ? this : GZIP;
+	}
+
+	/**
+	 * Wraps the given stream so that the written content is compressed.
+	 * Closing the returned stream finishes the compression and closes the
+	 * given stream.
+	 *
+	 * @param os
+	 *            the file stream
+	 * @return the compressing stream
+	 * @throws IOException
+	 *             if the compressor could not be created
+	 */
+	public abstract OutputStream wrap(OutputStream os) throws IOException;
+
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.runner.Description;
+
+import com.github.nfalco79.junit4osgi.runner.internal.Report.FailureType;
+
+/**
+ * An append only file where the outcome of each test method is recorded as
+ * soon as it finishes.
+ * <p>
+ * When the container dies during the execution of a test class its XML
+ * report is never written, at the next start the journal is used to
+ * recover the results of the methods executed so far. To limit the I/O the
+ * test method records are synchronised to the disk every {@code syncBatch}
+ * records or at most once per second, the start and the end of a test class
+ * always synchronise the journal so no record of a completed class is left
+ * in memory while the next one runs.
+ *
+ * @author Nikolas Falco
+ */
+public class ReportJournal implements Closeable {
+
+	/**
+	 * The name of the journal file in the reports directory.
+	 */
+	public static final String FILE_NAME = "junit4osgi.journal";
+
+	/**
+	 * The method name of the test added to the recovered reports to mark
+	 * the class execution as interrupted.
+	 */
+	public static final String INTERRUPTED_TEST = "interrupted";
+
+	private static final int MAGIC = 0x4A344F4A; // J4OJ
+	private static final byte VERSION = 1;
+	private static final byte CLASS_STARTED = 1;
+	private static final byte TEST_FINISHED = 2;
+	private static final byte CLASS_FINISHED = 3;
+	private static final int MAX_STRING_LENGTH = 64 * 1024 * 1024;
+	private static final long SYNC_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+	private static final String UTF_8 = "UTF-8";
+
+	private final File file;
+	private final int syncBatch;
+	private final FileOutputStream fos;
+	private final DataOutputStream out;
+	private final Set<String> openClasses = new HashSet<String>();
+	private int pending;
+	private long lastSync;
+	private IOException error;
+
+	/**
+	 * Creates a new empty journal, an existing file is truncated.
+	 *
+	 * @param file
+	 *            the journal file
+	 * @param syncBatch
+	 *            the number of records written before synchronise the file
+	 *            to the disk
+	 * @throws IOException
+	 *             if the file could not be created
+	 */
+	public ReportJournal(File file, int syncBatch) throws IOException {
+		if (syncBatch < 1) {
+			throw new IllegalArgumentException("sync batch must be greater than 0");
+		}
+		this.file = file;
+		this.syncBatch = syncBatch;
+
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.isDirectory()) {
+			FileUtils.forceMkdir(parent);
+		}
+		fos = new FileOutputStream(file);
+		out = new DataOutputStream(new BufferedOutputStream(fos));
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		lastSync = System.nanoTime();
+	}
+
+	/**
+	 * Records that the given test class is going to be executed.
+	 *
+	 * @param testId
+	 *            the test identifier
+	 * @param className
+	 *            the test class name
+	 */
+	public synchronized void classStarted(String testId, String className) {
+		if (error != null) {
+			return;
+		}
+		try {
+			out.writeByte(CLASS_STARTED);
+			out.writeUTF(testId);
+			out.writeUTF(className);
+			openClasses.add(testId);
+			sync();
+		} catch (IOException e) {
+			error = e;
+		}
+	}
+
+	/**
+	 * Records the outcome of a test method.
+	 *
+	 * @param testId
+	 *            the test class identifier
+	 * @param report
+	 *            the result of the test method execution
+	 */
+	public synchronized void testFinished(String testId, Report report) {
+		if (error != null) {
+			return;
+		}
+		Description description = report.getDescription();
+		try {
+			out.writeByte(TEST_FINISHED);
+			out.writeUTF(testId);
+			out.writeUTF(String.valueOf(description.getClassName()));
+			out.writeUTF(String.valueOf(description.getMethodName()));
+			out.writeByte(report.getType().ordinal());
+			out.writeLong(report.getElapsedNanos());
+			writeString(report.getMessage());
+			writeString(report.getFailureMessage());
+			writeString(report.getFailureClass());
+			writeString(report.getTrace());
+			written();
+		} catch (IOException e) {
+			error = e;
+		}
+	}
+
+	/**
+	 * Records that the XML report of the given test class has been written
+	 * so it has not to be recovered.
+	 *
+	 * @param testId
+	 *            the test identifier
+	 */
+	public synchronized void classFinished(String testId) {
+		if (error != null) {
+			return;
+		}
+		try {
+			out.writeByte(CLASS_FINISHED);
+			out.writeUTF(testId);
+			openClasses.remove(testId);
+			sync();
+		} catch (IOException e) {
+			error = e;
+		}
+	}
+
+	/**
+	 * Returns the first error occurred writing the journal, after an error
+	 * nothing else is recorded.
+	 *
+	 * @return the write error or {@code null}
+	 */
+	public synchronized IOException getError() {
+		return error;
+	}
+
+	/**
+	 * Closes the journal. If all test classes have been completed the file
+	 * is deleted because there is nothing to recover.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			out.flush();
+		} finally {
+			IOUtil.close(out);
+		}
+		if (error == null && openClasses.isEmpty()) {
+			FileUtils.forceDelete(file);
+		}
+	}
+
+	private void written() throws IOException {
+		pending++;
+		if (pending >= syncBatch || System.nanoTime() - lastSync >= SYNC_INTERVAL) {
+			sync();
+		}
+	}
+
+	private void sync() throws IOException {
+		out.flush();
+		fos.getFD().sync();
+		pending = 0;
+		lastSync = System.nanoTime();
+	}
+
+	private void writeString(String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = value.getBytes(UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Reads the given journal and returns a report for each test class that
+	 * has not been completed. Each report contains the methods recorded in
+	 * the journal and a failed {@value #INTERRUPTED_TEST} test. A truncated
+	 * or corrupted tail of the journal is ignored.
+	 *
+	 * @param file
+	 *            the journal file
+	 * @return the reports of the interrupted test classes, empty if the
+	 *         journal does not exist
+	 * @throws IOException
+	 *             if the file could not be read
+	 */
+	public static Collection<Report> recover(File file) throws IOException {
+		List<Report> reports = new ArrayList<Report>();
+		if (!file.isFile()) {
+			return reports;
+		}
+
+		// test id -> class name and method name -> last execution
+		Map<String, String> classes = new LinkedHashMap<String, String>();
+		Map<String, Map<String, Report>> methods = new LinkedHashMap<String, Map<String, Report>>();
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+				return reports;
+			}
+			boolean eof = false;
+			while (!eof) {
+				eof = !readRecord(in, classes, methods);
+			}
+		} catch (EOFException e) {
+			// the container died while writing the record
+		} finally {
+			IOUtil.close(in);
+		}
+
+		for (Map.Entry<String, String> entry : classes.entrySet()) {
+			reports.add(newReport(entry.getValue(), methods.get(entry.getKey()).values()));
+		}
+		return reports;
+	}
+
+	private static boolean readRecord(DataInputStream in, Map<String, String> classes, Map<String, Map<String, Report>> methods) throws IOException {
+		int type = in.read();
+		switch (type) {
+		case CLASS_STARTED: {
+			String testId = in.readUTF();
+			String className = in.readUTF();
+			classes.put(testId, className);
+			methods.put(testId, new LinkedHashMap<String, Report>());
+			return true;
+		}
+		case TEST_FINISHED: {
+			String testId = in.readUTF();
+			String className = in.readUTF();
+			String methodName = in.readUTF();
+			int ordinal = in.readByte();
+			long elapsedNanos = in.readLong();
+			String message = readString(in);
+			String failureMessage = readString(in);
+			String failureClass = readString(in);
+			String trace = readString(in);
+			if (ordinal < 0 || ordinal >= FailureType.values().length) {
+				return false;
+			}
+
+			Report report = new Report(Description.createTestDescription(className, methodName));
+			report.setResult(FailureType.values()[ordinal], message, failureMessage, failureClass, trace);
+			report.setElapsedNanos(elapsedNanos);
+			if (!classes.containsKey(testId)) {
+				// the class record has been lost
+				classes.put(testId, className);
+				methods.put(testId, new LinkedHashMap<String, Report>());
+			}
+			// the last execution of a rerun test wins
+			methods.get(testId).put(methodName, report);
+			return true;
+		}
+		case CLASS_FINISHED: {
+			String testId = in.readUTF();
+			classes.remove(testId);
+			methods.remove(testId);
+			return true;
+		}
+		default:
+			// end of file or corrupted record
+			return false;
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length == -1) {
+			return null;
+		}
+		if (length < -1 || length > MAX_STRING_LENGTH) {
+			throw new EOFException("corrupted string length " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		try {
+			return new String(bytes, UTF_8);
+		} catch (UnsupportedEncodingException e) {
+			return new String(bytes);
+		}
+	}
+
+	private static Report newReport(String className, Collection<Report> executions) {
+		Description suite = Description.createSuiteDescription(className);
+		Description interrupted = Description.createTestDescription(className, INTERRUPTED_TEST);
+		for (Report execution : executions) {
+			suite.addChild(execution.getDescription());
+		}
+		suite.addChild(interrupted);
+
+		Report root = new Report(suite);
+		long elapsedNanos = 0;
+		for (Report execution : executions) {
+			elapsedNanos += execution.getElapsedNanos();
+			root.addChild(execution);
+		}
+
+		Report interruptedReport = new Report(interrupted);
+		interruptedReport.setResult(FailureType.ERROR, null, "The test execution has been interrupted, results are recovered from the report journal", //
+				InterruptedException.class.getName(), null);
+		root.addChild(interruptedReport);
+
+		root.setElapsedNanos(elapsedNanos);
+		root.setRunCount(executions.size() + 1);
+		return root;
+	}
+
+}
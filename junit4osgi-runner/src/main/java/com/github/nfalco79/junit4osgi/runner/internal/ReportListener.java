@@ -17,16 +17,18 @@ package com.github.nfalco79.junit4osgi.runner.internal;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
-import java.io.UnsupportedEncodingException;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Ignore;
 import org.junit.runner.Description;
@@ -34,10 +36,16 @@ import org.junit.runner.Result;
 import org.junit.runner.notification.Failure;
 import org.junit.runner.notification.RunListener;
 
+import com.github.nfalco79.junit4osgi.runner.internal.FlightRecorderEvents.Span;
+
 /**
  * An implementation {@link RunListener} that gather all JUnit event and create
  * a complete {@link Report}.
  * <p>
+ * The report tree is created when the run starts and each node is filled
+ * by the first execution of its test, only tests executed more than once
+ * are resolved when the report is requested.
+ * <p>
  * This listener also deals to wrap standard output and error.
  *
  * @author Nikolas Falco
@@ -71,8 +79,6 @@ public class ReportListener extends RunListener {
 		}
 	}
 
-	private static final String UTF_8 = "UTF-8";
-
 	/**
 	 * Backup of the {@link System#out} stream.
 	 */
@@ -94,10 +100,57 @@ public class ReportListener extends RunListener {
 	private ByteArrayOutputStream err;
 
 	private DequeValueMap<Description, Report> executions = new DequeValueMapImpl<Description, Report>();
-	private long startTime;
+	private Map<Description, Report> nodes = new HashMap<Description, Report>();
+	private Set<Description> reruns = new LinkedHashSet<Description>();
+	private final Map<Description, Long> startTimes = new HashMap<Description, Long>();
+	private boolean runStarted;
+	private long runStartTime;
 	private long totalTime;
 	private int runCount;
 	private Report root;
+	private final String testId;
+	private final ReportJournal journal;
+	private final FlightRecorderEvents events = FlightRecorderEvents.getInstance();
+	private Span testSpan;
+	private String testOutcome;
+
+	public ReportListener() {
+		this(null);
+	}
+
+	/**
+	 * Creates a listener for the given test.
+	 *
+	 * @param testId
+	 *            the identifier of the test class used to tag the recorded
+	 *            events, could be {@code null}
+	 */
+	public ReportListener(String testId) {
+		this(testId, null);
+	}
+
+	/**
+	 * Creates a listener for the given test that records the outcome of each
+	 * test method in the given journal as soon as it finishes.
+	 *
+	 * @param testId
+	 *            the identifier of the test class
+	 * @param journal
+	 *            where test outcomes are appended, could be {@code null}
+	 */
+	public ReportListener(String testId, ReportJournal journal) {
+		this.testId = testId;
+		this.journal = journal;
+	}
+
+	/**
+	 * Returns the identifier of the test class this listener reports.
+	 *
+	 * @return the test identifier, could be {@code null}
+	 */
+	public String getTestId() {
+		return testId;
+	}
 
 	/*
 	 * (non-Javadoc)
@@ -105,12 +158,13 @@ public class ReportListener extends RunListener {
 	 */
 	@Override
 	public void testIgnored(Description description) {
-		Report info = new Report(description);
-		info.setElapsedTime(0d);
+		Report info = newExecution(description);
+		info.setElapsedNanos(0);
 		info.markAsIgnored();
 		info.setMessage(description.getAnnotation(Ignore.class).value());
+		journal(info);
 
-		executions.push(description, info);
+		events.testMethodStarted(getEventId(description), description.getMethodName()).end(FlightRecorderEvents.SKIPPED);
 	}
 
 	/*
@@ -119,14 +173,15 @@ public class ReportListener extends RunListener {
 	 */
 	@Override
 	public void testFailure(Failure failure) {
-		long endTime = System.currentTimeMillis();
+		long endTime = System.nanoTime();
 
 		Description description = failure.getDescription();
 		Report info = executions.peek(description);
-		info.setElapsedTime((endTime - startTime) / 1000d);
+		info.setElapsedNanos(elapsedTime(description, endTime));
 		info.setFailure(failure);
-		info.setOut(toString(out));
-		info.setErr(toString(err));
+		info.setOut(out.toByteArray());
+		info.setErr(err.toByteArray());
+		testOutcome = isFailure(failure) ? FlightRecorderEvents.FAILED : FlightRecorderEvents.ERROR;
 	}
 
 	/*
@@ -136,12 +191,11 @@ public class ReportListener extends RunListener {
 	@Override
 	public void testAssumptionFailure(Failure failure) {
 		Description description = failure.getDescription();
-		Report info = new Report(description);
-		info.setElapsedTime(0d);
+		Report info = newExecution(description);
+		info.setElapsedNanos(0);
 		info.markAsIgnored();
 		info.setMessage(failure.getMessage());
-
-		executions.push(description, info);
+		testOutcome = FlightRecorderEvents.SKIPPED;
 	}
 
 	/*
@@ -150,17 +204,17 @@ public class ReportListener extends RunListener {
 	 */
 	@Override
 	public void testStarted(Description description) throws Exception {
-		startTime = System.currentTimeMillis();
+		startTimes.put(description, System.nanoTime());
+		testSpan = events.testMethodStarted(getEventId(description), description.getMethodName());
+		testOutcome = FlightRecorderEvents.PASSED;
 
-		Report info = new Report(description);
+		Report info = newExecution(description);
 
 		err = new ByteArrayOutputStream();
 		out = new ByteArrayOutputStream();
 		System.setErr(new PrintStream(err));
 		System.setOut(new PrintStream(out));
 
-		executions.push(description, info);
-
 		if (root == null) {
 			root = info;
 		}
@@ -172,12 +226,22 @@ public class ReportListener extends RunListener {
 	 */
 	@Override
 	public void testFinished(Description description) throws Exception {
-		long endTime = System.currentTimeMillis();
+		long endTime = System.nanoTime();
 		System.setErr(errBackup);
 		System.setOut(outBackup);
 
 		Report info = executions.peek(description);
-		info.setElapsedTime((endTime - startTime) / 1000d);
+		info.setElapsedNanos(elapsedTime(description, endTime));
+		startTimes.remove(description);
+		journal(info);
+
+		endTestSpan(testOutcome);
+	}
+
+	private void journal(Report info) {
+		if (journal != null) {
+			journal.testFinished(testId, info);
+		}
 	}
 
 	/*
@@ -187,10 +251,15 @@ public class ReportListener extends RunListener {
 	@Override
 	public void testRunStarted(Description description) throws Exception {
 		executions.clear();
+		nodes.clear();
+		reruns.clear();
+		startTimes.clear();
 		runCount = 0;
 		totalTime = 0;
+		runStarted = true;
+		runStartTime = System.nanoTime();
 
-		root = new Report(description.getChildren().get(0));
+		root = newNode(description.getChildren().get(0));
 		executions.push(root.getDescription(), root);
 	}
 
@@ -200,18 +269,121 @@ public class ReportListener extends RunListener {
 	 */
 	@Override
 	public void testRunFinished(Result result) throws Exception {
-		totalTime = result.getRunTime();
+		totalTime = runStarted ? System.nanoTime() - runStartTime : TimeUnit.MILLISECONDS.toNanos(result.getRunTime());
 		runCount = result.getRunCount() + result.getIgnoreCount();
 	}
 
-	private static String toString(ByteArrayOutputStream out) {
-		try {
-			return out.toString(UTF_8);
-		} catch (UnsupportedEncodingException e) {
-			return out.toString();
+	/**
+	 * Called when the test run has been abandoned before its end, for example
+	 * because a timeout is expired.
+	 * <p>
+	 * The given failure is assigned to the running test, if the failure
+	 * description does not belong to any started test it is added to the
+	 * report as a new test.
+	 *
+	 * @param failure
+	 *            the reason of the abort
+	 */
+	public void testRunAborted(Failure failure) {
+		long endTime = System.nanoTime();
+		System.setErr(errBackup);
+		System.setOut(outBackup);
+		endTestSpan(FlightRecorderEvents.ERROR);
+
+		Description description = failure.getDescription();
+		Report info = executions.peek(description);
+		if (info == null) {
+			if (root == null) {
+				// the run was not started yet
+				Description suite = Description.createSuiteDescription(description.getClassName());
+				suite.addChild(description);
+				root = newNode(suite);
+				executions.push(suite, root);
+			}
+			boolean orphan = !nodes.containsKey(description);
+			info = newExecution(description);
+			info.setElapsedNanos(runStarted ? endTime - runStartTime : 0);
+			if (orphan) {
+				root.addChild(info);
+			}
+		} else {
+			info.setElapsedNanos(elapsedTime(description, endTime));
+			if (out != null) {
+				info.setOut(out.toByteArray());
+				info.setErr(err.toByteArray());
+			}
+		}
+		info.setFailure(failure);
+
+		totalTime = runStarted ? endTime - runStartTime : 0;
+		runCount = 0;
+		for (Description test : executions.keySet()) {
+			if (test.isTest()) {
+				runCount++;
+			}
+		}
+	}
+
+	/*
+	 * Creates the report nodes of the given description and all its
+	 * children.
+	 */
+	private Report newNode(Description description) {
+		Report node = new Report(description);
+		nodes.put(description, node);
+		for (Description child : description.getChildren()) {
+			Report childNode = nodes.get(child);
+			if (childNode == null) {
+				childNode = newNode(child);
+			}
+			node.addChild(childNode);
+		}
+		return node;
+	}
+
+	/*
+	 * Returns the report of a new execution of the given test. The first
+	 * execution is recorded directly in the node of the report tree.
+	 */
+	private Report newExecution(Description description) {
+		Deque<Report> runs = executions.get(description);
+		Report node = nodes.get(description);
+		Report info;
+		if (runs == null) {
+			info = node != null ? node : new Report(description);
+		} else {
+			if (node != null && runs.peekFirst() == node) {
+				// keep the first execution apart, the node will be
+				// resolved from all executions
+				runs.pollFirst();
+				runs.addFirst(new Report(node));
+			}
+			reruns.add(description);
+			info = new Report(description);
+		}
+		executions.push(description, info);
+		return info;
+	}
+
+	/*
+	 * Returns the nanoseconds elapsed since the given test has been started.
+	 */
+	private long elapsedTime(Description description, long endTime) {
+		Long startTime = startTimes.get(description);
+		return startTime != null ? endTime - startTime : 0;
+	}
+
+	private void endTestSpan(String outcome) {
+		if (testSpan != null) {
+			testSpan.end(outcome);
+			testSpan = null;
 		}
 	}
 
+	private String getEventId(Description description) {
+		return testId != null ? testId : description.getClassName();
+	}
+
 	/**
 	 * Returns if the given failure is due {@link AssertionError} or not.
 	 *
@@ -247,7 +419,7 @@ public class ReportListener extends RunListener {
 	 */
 	public boolean wasSuccess(Description description) {
 		Report info = executions.peek(description);
-		return info == null || info.getFailure() == null;
+		return info == null || !info.hasFailure();
 	}
 
 	/**
@@ -259,8 +431,8 @@ public class ReportListener extends RunListener {
 		Collection<Description> failures = new LinkedList<Description>();
 		for (Description test : executions.keySet()) {
 			final Report lastRun = executions.peek(test);
-			if (lastRun.getFailure() != null) {
-				failures.add(lastRun.getFailure().getDescription());
+			if (lastRun.hasFailure()) {
+				failures.add(lastRun.getDescription());
 			}
 		}
 		return Collections.unmodifiableCollection(failures);
@@ -269,8 +441,9 @@ public class ReportListener extends RunListener {
 	/**
 	 * Create a report from all JUnit events.
 	 * <p>
-	 * It builds a report that has a map where the key is the test description
-	 * and the value is an ordered list of all executions result of that test.
+	 * It returns the report tree where each test has the result of its last
+	 * success execution or of the first failure, all other executions are
+	 * available as runs of the test.
 	 *
 	 * @return the generated report
 	 */
@@ -279,49 +452,19 @@ public class ReportListener extends RunListener {
 			return new Report(Description.createSuiteDescription("no test execution"));
 		}
 
-		Set<Entry<Description,Deque<Report>>> tests = executions.entrySet();
-
-		Map<Description, Report> executionMap = new HashMap<Description, Report>(tests.size());
-
-		for (Entry<Description, Deque<Report>> test : tests) {
-			Deque<Report> runs = new ArrayDeque<Report>(test.getValue());
-			Report report = null;
-			// check if last run was success
-			if (runs.peekLast().isSuccess()) {
-				report = new Report(runs.pollLast());
-			} else {
-				// otherwise take the first failure
-				report = new Report(runs.poll());
-			}
-			executionMap.put(test.getKey(), report);
-			while (!runs.isEmpty()) {
-				report.addRun(new Report(runs.poll()));
+		for (Description test : reruns) {
+			Report node = nodes.get(test);
+			if (node != null) {
+				List<Report> runs = new ArrayList<Report>(executions.get(test));
+				// check if last run was success otherwise take the first failure
+				Report execution = runs.remove(runs.get(runs.size() - 1).isSuccess() ? runs.size() - 1 : 0);
+				node.setExecution(execution, runs);
 			}
 		}
 
-		buildExecutionTree(executionMap, root.getDescription());
-
-		Report report = executionMap.get(root.getDescription());
-		report.setElapsedTime(totalTime / 1000d);
-		report.setRunCount(runCount);
-		return report;
-	}
-
-	private void buildExecutionTree(Map<Description, Report> executionMap, Description parent) {
-		if (!executionMap.containsKey(parent)) {
-			// in case of test suite
-			executionMap.put(parent, new Report(parent));
-		}
-
-		for (Description child : parent.getChildren()) {
-			if (!executionMap.containsKey(child)) {
-				executionMap.put(child, new Report(child));
-			}
-			if (executionMap.containsKey(child)) {
-				executionMap.get(parent).addChild(executionMap.get(child));
-			}
-			buildExecutionTree(executionMap, child);
-		}
+		root.setElapsedNanos(totalTime);
+		root.setRunCount(runCount);
+		return root;
 	}
 
 }
\ No newline at end of file
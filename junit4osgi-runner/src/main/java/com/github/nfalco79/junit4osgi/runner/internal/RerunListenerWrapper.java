@@ -15,6 +15,8 @@
  */
 package com.github.nfalco79.junit4osgi.runner.internal;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.junit.runner.Description;
 import org.junit.runner.Result;
 import org.junit.runner.notification.Failure;
@@ -23,15 +25,32 @@ import org.junit.runner.notification.RunListener;
 /**
  * A wrapper of {@link RunListener} that delegates all JUnit events but remove
  * some initial events to handle multiple execution of the same test.
+ * <p>
+ * Events are no more delegated once the execution has been abandoned.
  *
  * @author nikolasfalco
  */
 public class RerunListenerWrapper extends RunListener {
 
 	private RunListener delegate;
+	private final AtomicBoolean abandoned;
 
 	public RerunListenerWrapper(RunListener delegate) {
+		this(delegate, new AtomicBoolean());
+	}
+
+	/**
+	 * Creates a wrapper that stops to delegate events when the given flag is
+	 * set.
+	 *
+	 * @param delegate
+	 *            the listener that receives events
+	 * @param abandoned
+	 *            set when the runner has abandoned the execution
+	 */
+	public RerunListenerWrapper(RunListener delegate, AtomicBoolean abandoned) {
 		this.delegate = delegate;
+		this.abandoned = abandoned;
 	}
 
 	@Override
@@ -46,27 +65,37 @@ public class RerunListenerWrapper extends RunListener {
 
 	@Override
 	public void testStarted(Description description) throws Exception {
-		delegate.testStarted(description);
+		if (!abandoned.get()) {
+			delegate.testStarted(description);
+		}
 	}
 
 	@Override
 	public void testFinished(Description description) throws Exception {
-		delegate.testFinished(description);
+		if (!abandoned.get()) {
+			delegate.testFinished(description);
+		}
 	}
 
 	@Override
 	public void testFailure(Failure failure) throws Exception {
-		delegate.testFailure(failure);
+		if (!abandoned.get()) {
+			delegate.testFailure(failure);
+		}
 	}
 
 	@Override
 	public void testAssumptionFailure(Failure failure) {
-		delegate.testAssumptionFailure(failure);
+		if (!abandoned.get()) {
+			delegate.testAssumptionFailure(failure);
+		}
 	}
 
 	@Override
 	public void testIgnored(Description description) throws Exception {
-		delegate.testIgnored(description);
+		if (!abandoned.get()) {
+			delegate.testIgnored(description);
+		}
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Keeps track of the test classes completed by a full run so that an
+ * interrupted run could be resumed.
+ * <p>
+ * Each completed test is appended to the file as a line composed by the
+ * outcome and the test id separated by a tab, so the file is never
+ * rewritten and a line truncated by a crash only loses that test. When the
+ * full run completes the file is deleted, so a later resume executes all
+ * tests again.
+ *
+ * @author Nikolas Falco
+ */
+public class RunCheckpoint {
+
+	/**
+	 * The name of the checkpoint file in the reports directory.
+	 */
+	public static final String FILE_NAME = "junit4osgi.checkpoint";
+
+	private static final String PASSED = "passed";
+	private static final String FAILED = "failed";
+	private static final String UTF_8 = "UTF-8";
+
+	private final File file;
+	private final Map<String, Boolean> outcomes = new ConcurrentHashMap<String, Boolean>();
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param file
+	 *            where the completed tests are recorded
+	 */
+	public RunCheckpoint(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Loads the tests completed by the previous run.
+	 *
+	 * @throws IOException
+	 *             if the file exists but could not be read
+	 */
+	public void load() throws IOException {
+		outcomes.clear();
+		if (!file.isFile()) {
+			return;
+		}
+
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int separator = line.indexOf('\t');
+				if (separator == -1) {
+					// skip line truncated by a crash
+					continue;
+				}
+				String outcome = line.substring(0, separator);
+				String testId = line.substring(separator + 1);
+				if (testId.length() > 0 && (PASSED.equals(outcome) || FAILED.equals(outcome))) {
+					outcomes.put(testId, FAILED.equals(outcome));
+				}
+			}
+		} finally {
+			IOUtil.close((Reader) reader);
+		}
+	}
+
+	/**
+	 * Starts a new run discarding all tests completed so far.
+	 *
+	 * @throws IOException
+	 *             if the file could not be deleted
+	 */
+	public void reset() throws IOException {
+		outcomes.clear();
+		if (file.exists()) {
+			FileUtils.forceDelete(file);
+		}
+	}
+
+	/**
+	 * Records that the given test has been completed.
+	 *
+	 * @param testId
+	 *            the test identifier
+	 * @param failed
+	 *            if the test has at least one failure
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	public void completed(String testId, boolean failed) throws IOException {
+		outcomes.put(testId, failed);
+
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.isDirectory()) {
+			FileUtils.forceMkdir(parent);
+		}
+
+		Writer writer = null;
+		try {
+			writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF_8);
+			writer.write((failed ? FAILED : PASSED) + '\t' + testId + '\n');
+			writer.flush();
+		} finally {
+			IOUtil.close(writer);
+		}
+	}
+
+	/**
+	 * Returns if the given test has been completed.
+	 *
+	 * @param testId
+	 *            the test identifier
+	 * @return {@code true} if the test has been completed, {@code false}
+	 *         otherwise
+	 */
+	public boolean isCompleted(String testId) {
+		return outcomes.containsKey(testId);
+	}
+
+	/**
+	 * Returns if the given test has been completed with failures.
+	 *
+	 * @param testId
+	 *            the test identifier
+	 * @return {@code true} if the test has been completed with at least one
+	 *         failure, {@code false} otherwise
+	 */
+	public boolean isFailed(String testId) {
+		return Boolean.TRUE.equals(outcomes.get(testId));
+	}
+
+	/**
+	 * Returns the identifiers of all completed tests.
+	 *
+	 * @return an unmodifiable view of completed test ids
+	 */
+	public Set<String> getCompleted() {
+		return Collections.unmodifiableSet(outcomes.keySet());
+	}
+
+}
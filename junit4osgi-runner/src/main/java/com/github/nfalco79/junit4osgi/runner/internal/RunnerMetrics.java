@@ -0,0 +1,260 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+import com.j256.simplejmx.common.JmxAttributeMethod;
+import com.j256.simplejmx.common.JmxOperation;
+import com.j256.simplejmx.common.JmxOperationInfo.OperationAction;
+import com.j256.simplejmx.common.JmxResource;
+
+/**
+ * Collects live metrics about the progress of the runner.
+ * <p>
+ * All counters are updated without locks by the threads that execute tests so
+ * they could be read at any time through JMX.
+ *
+ * @author Nikolas Falco
+ */
+@JmxResource(domainName = "org.osgi.junit4osgi", folderNames = "type=runner", beanName = "JUnitRunnerMetrics", description = "Progress and throughput metrics of the JUnit4 runner")
+public class RunnerMetrics extends RunListener {
+
+	/*
+	 * Times are in nanoseconds from System.nanoTime, so they are not affected
+	 * by changes of the wall clock.
+	 */
+	private static final class WorkerStats {
+		private final AtomicLong busyTime = new AtomicLong();
+		private volatile String currentTest;
+		private volatile long currentStartTime;
+	}
+
+	private final AtomicLong methodsStarted = new AtomicLong();
+	private final AtomicLong methodsFinished = new AtomicLong();
+	private final AtomicLong methodsFailed = new AtomicLong();
+	private final AtomicLong classesFinished = new AtomicLong();
+	private final AtomicInteger queueDepth = new AtomicInteger();
+	private final AtomicInteger reportBacklog = new AtomicInteger();
+	private final LatencyHistogram classDurations = new LatencyHistogram();
+	private final Map<String, WorkerStats> workers = new ConcurrentHashMap<String, WorkerStats>();
+	private volatile long startTime = System.nanoTime();
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.junit.runner.notification.RunListener#testStarted(org.junit.runner.Description)
+	 */
+	@Override
+	public void testStarted(Description description) throws Exception {
+		methodsStarted.incrementAndGet();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.junit.runner.notification.RunListener#testFinished(org.junit.runner.Description)
+	 */
+	@Override
+	public void testFinished(Description description) throws Exception {
+		methodsFinished.incrementAndGet();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.junit.runner.notification.RunListener#testFailure(org.junit.runner.notification.Failure)
+	 */
+	@Override
+	public void testFailure(Failure failure) throws Exception {
+		methodsFailed.incrementAndGet();
+	}
+
+	/**
+	 * Marks the start of a test class on the current thread.
+	 *
+	 * @param testId
+	 *            the test identifier
+	 */
+	public void testClassStarted(String testId) {
+		WorkerStats worker = getWorker(Thread.currentThread());
+		worker.currentStartTime = System.nanoTime();
+		worker.currentTest = testId;
+	}
+
+	/**
+	 * Marks the end of the test class running on the current thread.
+	 */
+	public void testClassFinished() {
+		WorkerStats worker = workers.get(workerName(Thread.currentThread()));
+		if (worker == null || worker.currentTest == null) {
+			return;
+		}
+		long elapsedTime = System.nanoTime() - worker.currentStartTime;
+		worker.currentTest = null;
+		worker.busyTime.addAndGet(elapsedTime);
+		classDurations.record(TimeUnit.NANOSECONDS.toMillis(elapsedTime));
+		classesFinished.incrementAndGet();
+	}
+
+	/**
+	 * Removes the statistics of a worker thread that will not run tests
+	 * anymore.
+	 *
+	 * @param thread
+	 *            the worker thread
+	 */
+	public void workerAbandoned(Thread thread) {
+		if (thread != null) {
+			workers.remove(workerName(thread));
+		}
+	}
+
+	public void setQueueDepth(int depth) {
+		queueDepth.set(depth);
+	}
+
+	/**
+	 * Marks the start of a report writing.
+	 */
+	public void reportQueued() {
+		reportBacklog.incrementAndGet();
+	}
+
+	/**
+	 * Marks the end of a report writing.
+	 */
+	public void reportWritten() {
+		reportBacklog.decrementAndGet();
+	}
+
+	private WorkerStats getWorker(Thread thread) {
+		String name = workerName(thread);
+		WorkerStats worker = workers.get(name);
+		if (worker == null) {
+			worker = new WorkerStats();
+			workers.put(name, worker);
+		}
+		return worker;
+	}
+
+	private static String workerName(Thread thread) {
+		return thread.getName() + "#" + thread.getId();
+	}
+
+	@JmxAttributeMethod(description = "Returns the number of test methods finished per second since the metrics has been reset")
+	public double getTestsPerSecond() {
+		long elapsedTime = System.nanoTime() - startTime;
+		return elapsedTime > 0 ? methodsFinished.get() * 1000000000d / elapsedTime : 0d;
+	}
+
+	@JmxAttributeMethod(description = "Returns the number of test methods started")
+	public long getMethodsStarted() {
+		return methodsStarted.get();
+	}
+
+	@JmxAttributeMethod(description = "Returns the number of test methods finished")
+	public long getMethodsFinished() {
+		return methodsFinished.get();
+	}
+
+	@JmxAttributeMethod(description = "Returns the number of test methods failed")
+	public long getMethodsFailed() {
+		return methodsFailed.get();
+	}
+
+	@JmxAttributeMethod(description = "Returns the number of test classes executed")
+	public long getClassesFinished() {
+		return classesFinished.get();
+	}
+
+	@JmxAttributeMethod(description = "Returns the number of test classes waiting in the queue")
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	@JmxAttributeMethod(description = "Returns the number of reports not yet written on disk")
+	public int getReportBacklog() {
+		return reportBacklog.get();
+	}
+
+	@JmxAttributeMethod(description = "Returns the median duration in milliseconds of test classes")
+	public long getClassDurationP50() {
+		return classDurations.getPercentile(50);
+	}
+
+	@JmxAttributeMethod(description = "Returns the 95th percentile duration in milliseconds of test classes")
+	public long getClassDurationP95() {
+		return classDurations.getPercentile(95);
+	}
+
+	@JmxAttributeMethod(description = "Returns the 99th percentile duration in milliseconds of test classes")
+	public long getClassDurationP99() {
+		return classDurations.getPercentile(99);
+	}
+
+	@JmxAttributeMethod(description = "Returns the test executing on each worker thread and since how many milliseconds")
+	public String[] getCurrentTests() {
+		long now = System.nanoTime();
+		List<String> result = new ArrayList<String>();
+		for (Entry<String, WorkerStats> entry : workers.entrySet()) {
+			WorkerStats worker = entry.getValue();
+			String testId = worker.currentTest;
+			if (testId != null) {
+				result.add(entry.getKey() + "=" + testId + " (" + TimeUnit.NANOSECONDS.toMillis(now - worker.currentStartTime) + " ms)");
+			}
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	@JmxAttributeMethod(description = "Returns the percentage of time each worker thread has spent running tests")
+	public String[] getWorkerUtilization() {
+		long now = System.nanoTime();
+		long elapsedTime = Math.max(1, now - startTime);
+		List<String> result = new ArrayList<String>();
+		for (Entry<String, WorkerStats> entry : workers.entrySet()) {
+			WorkerStats worker = entry.getValue();
+			long busyTime = worker.busyTime.get();
+			if (worker.currentTest != null) {
+				busyTime += now - worker.currentStartTime;
+			}
+			result.add(entry.getKey() + "=" + Math.min(100, (long) (busyTime * 100d / elapsedTime)) + "%");
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	@JmxOperation(description = "Reset all counters", operationAction = OperationAction.ACTION)
+	public void reset() {
+		methodsStarted.set(0);
+		methodsFinished.set(0);
+		methodsFailed.set(0);
+		classesFinished.set(0);
+		classDurations.reset();
+		for (WorkerStats worker : workers.values()) {
+			worker.busyTime.set(0);
+		}
+		startTime = System.nanoTime();
+	}
+
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+/**
+ * Keeps track of the results of previous executions of each test class.
+ * <p>
+ * The history is stored in a properties file where each key is composed by
+ * the test id and the kind of information stored.
+ *
+ * @author Nikolas Falco
+ */
+public class TestHistory {
+
+	private static final String TIME_SUFFIX = ".time";
+	private static final String FAILED_SUFFIX = ".failed";
+
+	private final File file;
+	private final Map<String, Long> elapsedTimes = new ConcurrentHashMap<String, Long>();
+	private final Set<String> failures = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param file
+	 *            where the history is persisted, if {@code null} the history
+	 *            is kept only in memory
+	 */
+	public TestHistory(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Loads the history from the file.
+	 *
+	 * @throws IOException
+	 *             if the file exists but could not be read
+	 */
+	public void load() throws IOException {
+		if (file == null || !file.isFile()) {
+			return;
+		}
+
+		Properties properties = new Properties();
+		InputStream is = null;
+		try {
+			is = new FileInputStream(file);
+			properties.load(is);
+		} finally {
+			IOUtil.close(is);
+		}
+
+		for (String key : properties.stringPropertyNames()) {
+			if (key.endsWith(TIME_SUFFIX)) {
+				String testId = key.substring(0, key.length() - TIME_SUFFIX.length());
+				try {
+					elapsedTimes.put(testId, Long.valueOf(properties.getProperty(key)));
+				} catch (NumberFormatException e) {
+					// skip corrupted entry
+				}
+			} else if (key.endsWith(FAILED_SUFFIX)) {
+				String testId = key.substring(0, key.length() - FAILED_SUFFIX.length());
+				setFailed(testId, Boolean.parseBoolean(properties.getProperty(key)));
+			}
+		}
+	}
+
+	/**
+	 * Saves the history to the file.
+	 *
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	public void store() throws IOException {
+		if (file == null) {
+			return;
+		}
+
+		Properties properties = new Properties();
+		for (Map.Entry<String, Long> entry : elapsedTimes.entrySet()) {
+			properties.setProperty(entry.getKey() + TIME_SUFFIX, String.valueOf(entry.getValue()));
+		}
+		for (String testId : failures) {
+			properties.setProperty(testId + FAILED_SUFFIX, Boolean.TRUE.toString());
+		}
+
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.isDirectory()) {
+			FileUtils.forceMkdir(parent);
+		}
+
+		OutputStream os = null;
+		try {
+			os = new FileOutputStream(file);
+			properties.store(os, "JUnit4OSGi test history");
+		} finally {
+			IOUtil.close(os);
+		}
+	}
+
+	/**
+	 * Returns the elapsed time of the last execution of the given test.
+	 *
+	 * @param testId
+	 *            the test identifier
+	 * @return the elapsed time in milliseconds or -1 if the test has never run
+	 */
+	public long getElapsedTime(String testId) {
+		Long elapsedTime = elapsedTimes.get(testId);
+		return elapsedTime == null ? -1 : elapsedTime;
+	}
+
+	/**
+	 * Returns a copy of the elapsed times of all tests in the history.
+	 *
+	 * @return the elapsed time in milliseconds of each test id
+	 */
+	public Map<String, Long> getElapsedTimes() {
+		return new HashMap<String, Long>(elapsedTimes);
+	}
+
+	/**
+	 * Records the elapsed time of the last execution of the given test.
+	 *
+	 * @param testId
+	 *            the test identifier
+	 * @param elapsedTime
+	 *            in milliseconds
+	 */
+	public void setElapsedTime(String testId, long elapsedTime) {
+		elapsedTimes.put(testId, elapsedTime);
+	}
+
+	/**
+	 * Returns if the last execution of the given test has failed.
+	 *
+	 * @param testId
+	 *            the test identifier
+	 * @return {@code true} if the test has at least one failure in its last
+	 *         execution, {@code false} otherwise
+	 */
+	public boolean isFailed(String testId) {
+		return failures.contains(testId);
+	}
+
+	/**
+	 * Records the result of the last execution of the given test.
+	 *
+	 * @param testId
+	 *            the test identifier
+	 * @param failed
+	 *            if the test has at least one failure
+	 */
+	public void setFailed(String testId, boolean failed) {
+		if (failed) {
+			failures.add(testId);
+		} else {
+			failures.remove(testId);
+		}
+	}
+
+	/**
+	 * Returns the sum of the elapsed time of the given tests. Tests that have
+	 * never run are not counted.
+	 *
+	 * @param tests
+	 *            to estimate
+	 * @return the estimated time in milliseconds
+	 */
+	public long estimate(Collection<TestBean> tests) {
+		long total = 0;
+		for (TestBean test : tests) {
+			long elapsedTime = getElapsedTime(test.getId());
+			if (elapsedTime > 0) {
+				total += elapsedTime;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Sorts the given tests so that the longest one are executed first. Tests
+	 * without an history are placed in front because their duration is
+	 * unknown, otherwise the original order is kept.
+	 *
+	 * @param tests
+	 *            to sort
+	 * @return a new sorted list of tests
+	 */
+	public List<TestBean> sort(Collection<TestBean> tests) {
+		return sort(tests, false);
+	}
+
+	/**
+	 * Sorts the given tests so that the longest one are executed first,
+	 * optionally the tests failed in the last execution are placed in front
+	 * of all others.
+	 *
+	 * @param tests
+	 *            to sort
+	 * @param failuresFirst
+	 *            if the tests failed in the last execution have to be placed
+	 *            in front
+	 * @return a new sorted list of tests
+	 */
+	public List<TestBean> sort(Collection<TestBean> tests, final boolean failuresFirst) {
+		List<TestBean> sorted = new ArrayList<TestBean>(tests);
+		Collections.sort(sorted, new Comparator<TestBean>() {
+			@Override
+			public int compare(TestBean t1, TestBean t2) {
+				if (failuresFirst) {
+					boolean failed1 = isFailed(t1.getId());
+					boolean failed2 = isFailed(t2.getId());
+					if (failed1 != failed2) {
+						return failed1 ? -1 : 1;
+					}
+				}
+
+				long time1 = getElapsedTime(t1.getId());
+				long time2 = getElapsedTime(t2.getId());
+				if (time1 == -1 || time2 == -1) {
+					// unknown goes first
+					return time1 == time2 ? 0 : (time1 == -1 ? -1 : 1);
+				}
+				return time1 < time2 ? 1 : (time1 == time2 ? 0 : -1);
+			}
+		});
+		return sorted;
+	}
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.util.Collection;
+
+import org.junit.runner.Description;
+import org.junit.runner.manipulation.Filter;
+
+/**
+ * A {@link Filter} that runs only the given test methods, suites are kept if
+ * contain at least one of them.
+ * <p>
+ * The filter is backed by the given collection so the same filter could be
+ * reused to run a subset of the previous execution.
+ *
+ * @author Nikolas Falco
+ */
+public class TestMethodsFilter extends Filter {
+
+	private final Collection<Description> tests;
+
+	public TestMethodsFilter(Collection<Description> tests) {
+		this.tests = tests;
+	}
+
+	@Override
+	public boolean shouldRun(Description description) {
+		if (description.isTest()) {
+			return tests.contains(description);
+		}
+
+		for (Description child : description.getChildren()) {
+			if (shouldRun(child)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String describe() {
+		return "Methods " + tests;
+	}
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringTokenizer;
+
+import org.osgi.framework.Bundle;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+/**
+ * The criteria used to order the tests in the queue.
+ * <p>
+ * Each criterion assigns a rank to a test, tests with a lower rank are
+ * executed first. The rank is computed when the test is enqueued.
+ *
+ * @author Nikolas Falco
+ */
+public enum TestOrder {
+	/**
+	 * Tests failed in the last execution first.
+	 */
+	FAILURES {
+		@Override
+		public long rank(TestBean test, TestHistory history) {
+			return history.isFailed(test.getId()) ? 0 : 1;
+		}
+	},
+	/**
+	 * Tests that have never run first, then the longest ones.
+	 */
+	DURATION {
+		@Override
+		public long rank(TestBean test, TestHistory history) {
+			long elapsedTime = history.getElapsedTime(test.getId());
+			return elapsedTime < 0 ? Long.MIN_VALUE : -elapsedTime;
+		}
+	},
+	/**
+	 * Tests of the same bundle together, in order of bundle id.
+	 */
+	BUNDLE {
+		@Override
+		public long rank(TestBean test, TestHistory history) {
+			Bundle bundle = test.getBundle();
+			return bundle == null ? Long.MAX_VALUE : bundle.getBundleId();
+		}
+	},
+	/**
+	 * Tests with a higher priority in the {@value #PRIORITY_HEADER} header of
+	 * their bundle first.
+	 */
+	PRIORITY {
+		@Override
+		public long rank(TestBean test, TestHistory history) {
+			return -getPriority(test);
+		}
+	};
+
+	/**
+	 * The MANIFEST header that declares the priority of the tests of a bundle
+	 * as a comma separated list of {@code <class name>=<priority>}, the
+	 * {@code *} class name is the priority of all other tests. The default
+	 * priority is 0.
+	 */
+	public static final String PRIORITY_HEADER = "Test-Priority";
+
+	private static final String ANY_CLASS = "*";
+
+	/**
+	 * Returns the rank of the given test for this order.
+	 *
+	 * @param test
+	 *            the test to rank
+	 * @param history
+	 *            the history of previous executions
+	 * @return the rank, lower runs first
+	 */
+	public abstract long rank(TestBean test, TestHistory history);
+
+	/**
+	 * Returns the priority declared for the given test in the MANIFEST of
+	 * its bundle.
+	 *
+	 * @param test
+	 *            the test
+	 * @return the declared priority or 0 if not declared or not valid
+	 */
+	public static int getPriority(TestBean test) {
+		Bundle bundle = test.getBundle();
+		String value = bundle == null ? null : bundle.getHeaders().get(PRIORITY_HEADER);
+		if (value == null) {
+			return 0;
+		}
+
+		Integer priority = null;
+		StringTokenizer st = new StringTokenizer(value, ",");
+		while (st.hasMoreTokens()) {
+			String entry = st.nextToken();
+			int index = entry.indexOf('=');
+			if (index == -1) {
+				continue;
+			}
+			String className = entry.substring(0, index).trim();
+			boolean exact = className.equals(test.getName());
+			if (exact || (priority == null && ANY_CLASS.equals(className))) {
+				try {
+					priority = Integer.valueOf(entry.substring(index + 1).trim());
+				} catch (NumberFormatException e) {
+					// skip invalid entry
+				}
+				if (exact) {
+					break;
+				}
+			}
+		}
+		return priority == null ? 0 : priority;
+	}
+
+	/**
+	 * Returns the orders for the given value of the
+	 * {@link JUnitRunner#TEST_ORDER} property.
+	 *
+	 * @param value
+	 *            a comma or space separated list of failures, duration,
+	 *            bundle or priority, case insensitive
+	 * @return the orders in the given sequence, empty if value is
+	 *         {@code null} or empty
+	 * @throws IllegalArgumentException
+	 *             if the value contains an unknown order
+	 */
+	public static List<TestOrder> parse(String value) {
+		List<TestOrder> orders = new ArrayList<TestOrder>();
+		if (value == null) {
+			return orders;
+		}
+		StringTokenizer st = new StringTokenizer(value, ", ");
+		while (st.hasMoreTokens()) {
+			String order = st.nextToken();
+			try {
+				orders.add(valueOf(order.toUpperCase(Locale.ENGLISH)));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("test order must be a list of failures, duration, bundle or priority: " + order);
+			}
+		}
+		return orders;
+	}
+
+}
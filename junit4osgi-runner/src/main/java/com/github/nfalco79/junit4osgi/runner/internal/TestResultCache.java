@@ -0,0 +1,315 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.runner.Description;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+/**
+ * Keeps the content hash of the test classes that passed, so that a test
+ * class whose byte code and dependencies did not change since its last
+ * green run could be skipped.
+ * <p>
+ * The hash is computed on the test class name, the content of the test
+ * bundle and the content of the bundles it is wired to through an
+ * Import-Package or a Require-Bundle. The content is used instead of the
+ * bundle revision because a framework provisioned from scratch installs new
+ * revisions of the same bundles at each run. The content of each bundle is
+ * digested once while it is not modified, the digests could be shared
+ * across the runs through a {@link BundleDigestCache}.
+ *
+ * @author Nikolas Falco
+ */
+public class TestResultCache {
+
+	/**
+	 * The name of the cache file in the reports directory.
+	 */
+	public static final String FILE_NAME = "junit4osgi.cache";
+
+	/**
+	 * The message of the tests skipped because of a cached green result.
+	 */
+	public static final String SKIPPED_CACHED = "skipped-cached";
+
+	private static final String[] NAMESPACES = { BundleRevision.PACKAGE_NAMESPACE, BundleRevision.BUNDLE_NAMESPACE };
+	private static final String ALGORITHM = "SHA-1";
+	private static final String UTF_8 = "UTF-8";
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final File file;
+	private final Map<String, String> greens = new ConcurrentHashMap<String, String>();
+	private final BundleDigestCache bundleDigests;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param file
+	 *            where the hashes of green tests are persisted
+	 */
+	public TestResultCache(File file) {
+		this(file, new BundleDigestCache());
+	}
+
+	/**
+	 * Creates a cache that reuses the given bundle digests.
+	 *
+	 * @param file
+	 *            where the hashes of green tests are persisted
+	 * @param bundleDigests
+	 *            the content digests of the bundles computed so far
+	 */
+	public TestResultCache(File file, BundleDigestCache bundleDigests) {
+		this.file = file;
+		this.bundleDigests = bundleDigests;
+	}
+
+	/**
+	 * Loads the hashes of green tests from the file.
+	 *
+	 * @throws IOException
+	 *             if the file exists but could not be read
+	 */
+	public void load() throws IOException {
+		greens.clear();
+		if (!file.isFile()) {
+			return;
+		}
+
+		Properties properties = new Properties();
+		InputStream is = null;
+		try {
+			is = new FileInputStream(file);
+			properties.load(is);
+		} finally {
+			IOUtil.close(is);
+		}
+		for (String testId : properties.stringPropertyNames()) {
+			greens.put(testId, properties.getProperty(testId));
+		}
+	}
+
+	/**
+	 * Saves the hashes of green tests to the file.
+	 *
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	public void store() throws IOException {
+		Properties properties = new Properties();
+		properties.putAll(greens);
+
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.isDirectory()) {
+			FileUtils.forceMkdir(parent);
+		}
+
+		OutputStream os = null;
+		try {
+			os = new FileOutputStream(file);
+			properties.store(os, "JUnit4OSGi green tests");
+		} finally {
+			IOUtil.close(os);
+		}
+	}
+
+	/**
+	 * Returns if the given test passed in a previous run with the same hash.
+	 *
+	 * @param testId
+	 *            the test identifier
+	 * @param hash
+	 *            the current hash of the test
+	 * @return {@code true} if the test could be skipped, {@code false}
+	 *         otherwise
+	 */
+	public boolean isGreen(String testId, String hash) {
+		return hash != null && hash.equals(greens.get(testId));
+	}
+
+	/**
+	 * Records the result of the given test, only green results are kept.
+	 *
+	 * @param testId
+	 *            the test identifier
+	 * @param hash
+	 *            the hash of the test when it was executed, if {@code null}
+	 *            the test is removed
+	 * @param failed
+	 *            if the test has failed
+	 */
+	public void setResult(String testId, String hash, boolean failed) {
+		if (failed || hash == null) {
+			greens.remove(testId);
+		} else {
+			greens.put(testId, hash);
+		}
+	}
+
+	/**
+	 * Computes the content hash of the given test.
+	 *
+	 * @param test
+	 *            the test to hash
+	 * @return the hash as hexadecimal string or {@code null} if the content
+	 *         of the test bundle or of a wired bundle could not be read
+	 */
+	public String hash(TestBean test) {
+		MessageDigest digest = newDigest();
+		try {
+			digest.update(test.getName().getBytes(UTF_8));
+
+			Bundle bundle = test.getBundle();
+			digest.update(digest(bundle));
+
+			BundleWiring wiring = bundle.adapt(BundleWiring.class);
+			if (wiring == null) {
+				return null;
+			}
+			// wires are sorted to compute the same hash regardless the
+			// resolution order
+			List<Bundle> providers = new ArrayList<Bundle>();
+			for (String namespace : NAMESPACES) {
+				List<BundleWire> wires = wiring.getRequiredWires(namespace);
+				if (wires != null) {
+					for (BundleWire wire : wires) {
+						Bundle provider = wire.getProviderWiring().getBundle();
+						if (!providers.contains(provider) && !bundle.equals(provider)) {
+							providers.add(provider);
+						}
+					}
+				}
+			}
+			Collections.sort(providers, new Comparator<Bundle>() {
+				@Override
+				public int compare(Bundle b1, Bundle b2) {
+					return String.valueOf(b1.getSymbolicName()).compareTo(String.valueOf(b2.getSymbolicName()));
+				}
+			});
+			for (Bundle provider : providers) {
+				digest.update(digest(provider));
+			}
+		} catch (IOException e) {
+			return null;
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Creates the report of a test class skipped because of a cached green
+	 * result, each test is reported as skipped.
+	 *
+	 * @param description
+	 *            the description of the test class
+	 * @return the report of the skipped class
+	 */
+	public static Report newSkippedReport(Description description) {
+		return Report.newSkippedReport(description, SKIPPED_CACHED);
+	}
+
+	/*
+	 * The system bundle content can not be enumerated, only its version is
+	 * digested.
+	 */
+	private byte[] digest(Bundle bundle) throws IOException {
+		byte[] bundleDigest = bundleDigests.get(bundle);
+		if (bundleDigest != null) {
+			return bundleDigest;
+		}
+
+		MessageDigest digest = newDigest();
+		digest.update(String.valueOf(bundle.getSymbolicName()).getBytes(UTF_8));
+		digest.update(String.valueOf(bundle.getHeaders().get(Constants.BUNDLE_VERSION)).getBytes(UTF_8));
+		if (bundle.getBundleId() != 0) {
+			List<URL> entries = new ArrayList<URL>();
+			Enumeration<URL> urls = bundle.findEntries("/", "*", true);
+			while (urls != null && urls.hasMoreElements()) {
+				URL entry = urls.nextElement();
+				if (!entry.getPath().endsWith("/")) {
+					entries.add(entry);
+				}
+			}
+			Collections.sort(entries, new Comparator<URL>() {
+				@Override
+				public int compare(URL u1, URL u2) {
+					return u1.getPath().compareTo(u2.getPath());
+				}
+			});
+
+			byte[] buffer = new byte[8192];
+			for (URL entry : entries) {
+				digest.update(entry.getPath().getBytes(UTF_8));
+				InputStream is = entry.openStream();
+				try {
+					int read;
+					while ((read = is.read(buffer)) != -1) {
+						digest.update(buffer, 0, read);
+					}
+				} finally {
+					IOUtil.close(is);
+				}
+			}
+		}
+		bundleDigest = digest.digest();
+		bundleDigests.put(bundle, bundleDigest);
+		return bundleDigest;
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance(ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-1 is required by the Java platform
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+		}
+		return new String(chars);
+	}
+
+}
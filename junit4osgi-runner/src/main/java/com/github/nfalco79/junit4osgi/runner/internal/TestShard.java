@@ -0,0 +1,174 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+/**
+ * Splits tests among multiple runner instances so that each instance
+ * executes a different subset of the same test set.
+ * <p>
+ * The assignment is a pure function of the test identifier and of the
+ * durations given at construction, so all instances agree on it without
+ * talking each other and whatever is the order in which tests are
+ * discovered. By default tests are assigned using a stable hash of their
+ * identifier. When durations are given, tests with a known duration are
+ * assigned to the least loaded shard starting from the longest one, this
+ * requires that all instances use the same durations. Tests without a
+ * duration, like the one installed later, are assigned by hash.
+ *
+ * @author Nikolas Falco
+ */
+public final class TestShard {
+
+	private final int index;
+	private final int count;
+	private final Map<String, Integer> assignments;
+
+	/**
+	 * Creates a shard that takes one of {@code count} part of the tests.
+	 *
+	 * @param index
+	 *            zero based index of this shard
+	 * @param count
+	 *            total number of shards
+	 * @param history
+	 *            the durations shared by all instances used to balance
+	 *            shards, the elapsed times are copied so later changes to
+	 *            the history do not affect the assignment, if {@code null}
+	 *            tests are assigned by hash
+	 */
+	public TestShard(int index, int count, TestHistory history) {
+		if (count < 1) {
+			throw new IllegalArgumentException("shard count must be greater than 0");
+		}
+		if (index < 0 || index >= count) {
+			throw new IllegalArgumentException("shard index must be between 0 and " + (count - 1));
+		}
+		this.index = index;
+		this.count = count;
+		if (count > 1 && history != null) {
+			assignments = assign(history.getElapsedTimes(), count);
+		} else {
+			assignments = Collections.emptyMap();
+		}
+	}
+
+	/*
+	 * Assigns the tests in the history to the least loaded shard, longest
+	 * processing time first, ties are ordered by id to be stable between
+	 * instances.
+	 */
+	private static Map<String, Integer> assign(final Map<String, Long> elapsedTimes, int count) {
+		List<String> testIds = new ArrayList<String>(elapsedTimes.keySet());
+		Collections.sort(testIds, new Comparator<String>() {
+			@Override
+			public int compare(String id1, String id2) {
+				long time1 = elapsedTimes.get(id1);
+				long time2 = elapsedTimes.get(id2);
+				if (time1 != time2) {
+					return time1 < time2 ? 1 : -1;
+				}
+				return id1.compareTo(id2);
+			}
+		});
+
+		Map<String, Integer> assignments = new HashMap<String, Integer>(testIds.size() * 4 / 3 + 1);
+		long[] loads = new long[count];
+		for (String testId : testIds) {
+			int shard = 0;
+			for (int i = 1; i < count; i++) {
+				if (loads[i] < loads[shard]) {
+					shard = i;
+				}
+			}
+			loads[shard] += elapsedTimes.get(testId);
+			assignments.put(testId, shard);
+		}
+		return assignments;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns if the given test belongs to this shard.
+	 *
+	 * @param test
+	 *            to check
+	 * @return {@code true} if this shard have to run the test, {@code false}
+	 *         otherwise
+	 */
+	public boolean accept(TestBean test) {
+		if (count == 1) {
+			return true;
+		}
+		Integer shard = assignments.get(test.getId());
+		if (shard != null) {
+			return shard == index;
+		}
+		return hash(test.getId()) % count == index;
+	}
+
+	/**
+	 * Selects the tests that belong to this shard, the order of the given
+	 * tests is preserved.
+	 *
+	 * @param tests
+	 *            the whole set of tests to split
+	 * @return the tests to run in this shard
+	 */
+	public List<TestBean> select(Collection<TestBean> tests) {
+		List<TestBean> result = new ArrayList<TestBean>(count == 1 ? tests.size() : tests.size() / count + 1);
+		for (TestBean test : tests) {
+			if (accept(test)) {
+				result.add(test);
+			}
+		}
+		return result;
+	}
+
+	private static int hash(String testId) {
+		CRC32 crc = new CRC32();
+		try {
+			crc.update(testId.getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			crc.update(testId.getBytes());
+		}
+		return (int) (crc.getValue() & Integer.MAX_VALUE);
+	}
+
+	@Override
+	public String toString() {
+		return (index + 1) + "/" + count;
+	}
+
+}
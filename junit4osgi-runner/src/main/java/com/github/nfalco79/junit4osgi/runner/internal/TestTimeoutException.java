@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.Map.Entry;
+
+/**
+ * Signals that a test has exceeded its timeout.
+ * <p>
+ * The stack trace is the one of the stuck thread, when printed it also
+ * contains a dump of all threads alive at the time of the timeout.
+ *
+ * @author Nikolas Falco
+ */
+@SuppressWarnings("serial")
+public class TestTimeoutException extends Exception {
+
+	private static final String NL = System.getProperty("line.separator");
+
+	private final String threadDump;
+
+	public TestTimeoutException(String message, Thread thread) {
+		super(message);
+		if (thread != null) {
+			setStackTrace(thread.getStackTrace());
+		}
+		threadDump = dumpThreads();
+	}
+
+	/**
+	 * Returns the stack trace of all threads taken when the timeout expired.
+	 *
+	 * @return the thread dump
+	 */
+	public String getThreadDump() {
+		return threadDump;
+	}
+
+	@Override
+	public void printStackTrace(PrintStream s) {
+		super.printStackTrace(s);
+		s.print(threadDump);
+	}
+
+	@Override
+	public void printStackTrace(PrintWriter s) {
+		super.printStackTrace(s);
+		s.print(threadDump);
+	}
+
+	private static String dumpThreads() {
+		StringBuilder sb = new StringBuilder(NL).append("Full thread dump:").append(NL);
+		for (Entry<Thread, StackTraceElement[]> entry : Thread.getAllStackTraces().entrySet()) {
+			Thread thread = entry.getKey();
+			sb.append(NL).append('"').append(thread.getName()).append('"');
+			if (thread.isDaemon()) {
+				sb.append(" daemon");
+			}
+			sb.append(" prio=").append(thread.getPriority()) //
+					.append(" id=").append(thread.getId()) //
+					.append(' ').append(thread.getState()).append(NL);
+			for (StackTraceElement element : entry.getValue()) {
+				sb.append("\tat ").append(element).append(NL);
+			}
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * A {@link RunListener} that keeps track of the test running on the worker
+ * thread so that the runner can detect a test class or a test method that
+ * exceeds the configured timeout.
+ * <p>
+ * Times are measured with {@link System#nanoTime()} so a change of the wall
+ * clock can not abort a healthy test or delay a timeout.
+ *
+ * @author Nikolas Falco
+ */
+public class TestWatchdog extends RunListener {
+
+	private final long classTimeout;
+	private final long testTimeout;
+	private final long classTimeoutNanos;
+	private final long testTimeoutNanos;
+	private volatile Thread worker;
+	private volatile long classStartTime;
+	private volatile long testStartTime;
+	private volatile Description currentTest;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param classTimeout
+	 *            the maximum time in milliseconds for a run of a test class, 0
+	 *            to disable
+	 * @param testTimeout
+	 *            the maximum time in milliseconds for a single test method, 0
+	 *            to disable
+	 */
+	public TestWatchdog(long classTimeout, long testTimeout) {
+		this.classTimeout = classTimeout;
+		this.testTimeout = testTimeout;
+		this.classTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(classTimeout);
+		this.testTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(testTimeout);
+	}
+
+	/**
+	 * Returns if at least one timeout is configured.
+	 *
+	 * @return {@code true} if the watchdog have to check timeouts,
+	 *         {@code false} otherwise
+	 */
+	public boolean isEnabled() {
+		return classTimeout > 0 || testTimeout > 0;
+	}
+
+	/**
+	 * Marks the start of a test class on the current thread.
+	 */
+	public void start() {
+		currentTest = null;
+		classStartTime = System.nanoTime();
+		worker = Thread.currentThread();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.junit.runner.notification.RunListener#testRunStarted(org.junit.runner.Description)
+	 */
+	@Override
+	public void testRunStarted(Description description) throws Exception {
+		// each rerun of a test class has its own time
+		classStartTime = System.nanoTime();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.junit.runner.notification.RunListener#testStarted(org.junit.runner.Description)
+	 */
+	@Override
+	public void testStarted(Description description) throws Exception {
+		testStartTime = System.nanoTime();
+		currentTest = description;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.junit.runner.notification.RunListener#testFinished(org.junit.runner.Description)
+	 */
+	@Override
+	public void testFinished(Description description) throws Exception {
+		currentTest = null;
+	}
+
+	/**
+	 * Returns the test method that is running.
+	 *
+	 * @return the description of the running test or {@code null} if the
+	 *         worker is outside any test method
+	 */
+	public Description getCurrentTest() {
+		return currentTest;
+	}
+
+	/**
+	 * Returns the thread that is running the test class.
+	 *
+	 * @return the worker thread
+	 */
+	public Thread getWorker() {
+		return worker;
+	}
+
+	/**
+	 * Returns the time before the first timeout expires.
+	 *
+	 * @return the time in milliseconds, zero or negative if a timeout is
+	 *         expired, {@link Long#MAX_VALUE} if no timeout is configured
+	 */
+	public long getRemainingTime() {
+		long now = System.nanoTime();
+		long remaining = Long.MAX_VALUE;
+		if (classTimeout > 0) {
+			remaining = toMillis(classStartTime + classTimeoutNanos - now);
+		}
+		if (testTimeout > 0) {
+			if (currentTest != null) {
+				remaining = Math.min(remaining, toMillis(testStartTime + testTimeoutNanos - now));
+			} else {
+				// check again later, a test method could be started meanwhile
+				remaining = Math.min(remaining, testTimeout);
+			}
+		}
+		return remaining;
+	}
+
+	/**
+	 * Creates the exception that describes the expired timeout, the stack
+	 * trace is taken from the stuck worker thread.
+	 *
+	 * @return a new timeout exception
+	 */
+	public TestTimeoutException newTimeoutException() {
+		Description test = currentTest;
+		String message;
+		if (test != null && testTimeout > 0 && System.nanoTime() - testStartTime >= testTimeoutNanos) {
+			message = "Test " + test.getDisplayName() + " timed out after " + testTimeout + " milliseconds";
+		} else {
+			message = "Test class timed out after " + classTimeout + " milliseconds";
+		}
+		return new TestTimeoutException(message, worker);
+	}
+
+	/*
+	 * Rounds up so a timeout is never reported as expired before its time.
+	 */
+	private static long toMillis(long nanos) {
+		return nanos > 0 ? TimeUnit.NANOSECONDS.toMillis(nanos - 1) + 1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+}
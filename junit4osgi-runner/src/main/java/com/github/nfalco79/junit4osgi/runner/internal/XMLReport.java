@@ -18,7 +18,9 @@ package com.github.nfalco79.junit4osgi.runner.internal;
 import static com.github.nfalco79.junit4osgi.runner.internal.SurefireConstants.*;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.text.MessageFormat;
@@ -32,9 +34,10 @@ import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.WriterFactory;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.junit.runner.Description;
-import org.junit.runner.notification.Failure;
 
-import com.github.nfalco79.junit4osgi.runner.internal.xml.util.XMLChar;
+import com.github.nfalco79.junit4osgi.registry.trace.TraceEvent;
+import com.github.nfalco79.junit4osgi.registry.trace.Tracer;
+import com.github.nfalco79.junit4osgi.runner.internal.xml.util.XMLSanitizer;
 import com.github.nfalco79.junit4osgi.runner.internal.xml.util.Xpp3DomWriter;
 
 /**
@@ -53,12 +56,30 @@ public class XMLReport {
 	private int ignoredCount;
 
 	private final File reportsDirectory;
+	private final ReportCompression compression;
 
 	public XMLReport(File reportsDirectory) {
+		this(reportsDirectory, ReportCompression.NONE);
+	}
+
+	/**
+	 * Creates a report writer that compress the XML files.
+	 *
+	 * @param reportsDirectory
+	 *            where reports are written
+	 * @param compression
+	 *            applied to the written XML, the compression extension is
+	 *            appended to the file name
+	 */
+	public XMLReport(File reportsDirectory, ReportCompression compression) {
 		if (reportsDirectory == null) {
 			throw new NullPointerException("report directory is null");
 		}
+		if (compression == null) {
+			throw new NullPointerException("compression is null");
+		}
 		this.reportsDirectory = reportsDirectory;
+		this.compression = compression;
 	}
 
 	private String formatNumber(double time) {
@@ -73,22 +94,22 @@ public class XMLReport {
 	 *
 	 * @param element
 	 *            the DOM parent element under wrote the problem
-	 * @param failure
-	 *            the error cause
+	 * @param report
+	 *            the test report with the error cause
 	 */
-	private void writeTestError(Xpp3Dom element, Failure failure) {
-		Throwable exception = failure.getException();
-		if (exception != null) {
-			String message = escape(failure.getMessage());
+	private void writeTestError(Xpp3Dom element, Report report) {
+		String exceptionClass = report.getFailureClass();
+		if (exceptionClass != null) {
+			String message = XMLSanitizer.sanitize(report.getFailureMessage());
 			if (message != null) {
 				element.setAttribute(TEST_ERROR_MESSAGE_ATTRIBUTE, message);
 			}
 
-			element.setAttribute(TEST_ERROR_TYPE_ATTRIBUTE, exception.getClass().getName());
+			element.setAttribute(TEST_ERROR_TYPE_ATTRIBUTE, exceptionClass);
 		}
-		String stackTrace = failure.getTrace();
+		String stackTrace = report.getTrace();
 		if (stackTrace != null) {
-			element.setValue(stackTrace);
+			element.setValue(XMLSanitizer.sanitize(stackTrace));
 		}
 	}
 
@@ -97,39 +118,25 @@ public class XMLReport {
 	 *
 	 * @param element
 	 *            the DOM parent element under wrote the problem
-	 * @param failure
-	 *            the failing cause
+	 * @param report
+	 *            the test report with the failing cause
 	 */
-	private void writeTestFailure(Xpp3Dom element, Failure failure) {
-		Throwable exception = failure.getException();
-		if (exception != null) {
-			String message = escape(failure.getMessage());
+	private void writeTestFailure(Xpp3Dom element, Report report) {
+		String exceptionClass = report.getFailureClass();
+		if (exceptionClass != null) {
+			String message = XMLSanitizer.sanitize(report.getFailureMessage());
 			if (message != null) {
 				element.setAttribute(TEST_FAILURE_MESSAGE_ATTRIBUTE, message);
 			}
 
-			element.setAttribute(TEST_FAILURE_TYPE_ATTRIBUTE, exception.getClass().getName());
+			element.setAttribute(TEST_FAILURE_TYPE_ATTRIBUTE, exceptionClass);
 		}
-		String stackTrace = failure.getTrace();
+		String stackTrace = report.getTrace();
 		if (stackTrace != null) {
-			element.setValue(stackTrace);
+			element.setValue(XMLSanitizer.sanitize(stackTrace));
 		}
 	}
 
-	private String escape(final String message) {
-		if (message == null) {
-			return message;
-		}
-
-		char[] escapedMessage = message.toCharArray();
-		for (int i = 0; i < escapedMessage.length; i++) {
-			if (XMLChar.isInvalid(escapedMessage[i])) {
-				escapedMessage[i] = '?';
-			}
-		}
-		return new String(escapedMessage);
-	}
-
 	/**
 	 * Utility method writing ignored test result in the report.
 	 *
@@ -140,7 +147,7 @@ public class XMLReport {
 	 */
 	private void writeTestSkipped(Xpp3Dom element, String message) {
 		if (StringUtils.isNotEmpty(message)) {
-			element.setAttribute(TEST_SKIPPED_MESSAGE_ATTRIBUTE, message);
+			element.setAttribute(TEST_SKIPPED_MESSAGE_ATTRIBUTE, XMLSanitizer.sanitize(message));
 		}
 	}
 
@@ -158,20 +165,28 @@ public class XMLReport {
 			return;
 		}
 
+		Tracer tracer = Tracer.getInstance();
+		long startTime = tracer.start();
+
 		if (!reportsDirectory.isDirectory()) {
 			FileUtils.forceMkdir(reportsDirectory);
 		}
 
 		Xpp3Dom dom = createDOM(null, report);
 
-		File reportFile = new File(reportsDirectory, MessageFormat.format(DEFAULT_NAME, dom.getAttribute(SUITE_NAME_ATTRIBUTE).replace(' ', '_')));
+		File reportFile = new File(reportsDirectory, MessageFormat.format(DEFAULT_NAME, dom.getAttribute(SUITE_NAME_ATTRIBUTE).replace(' ', '_')) + compression.getExtension());
 
+		OutputStream fos = null;
+		OutputStream os = null;
 		Writer writer = null;
 		try {
+			fos = new FileOutputStream(reportFile);
+			// the XML is streamed through the compressor
+			os = compression.wrap(fos);
 			try {
-				writer = WriterFactory.newWriter(reportFile, WriterFactory.UTF_8);
+				writer = WriterFactory.newWriter(os, WriterFactory.UTF_8);
 			} catch (UnsupportedEncodingException e) {
-				writer = WriterFactory.newPlatformWriter(reportFile);
+				writer = WriterFactory.newPlatformWriter(os);
 			}
 			writer.write(MessageFormat.format(XML_HEADER, WriterFactory.UTF_8) + NL);
 
@@ -179,6 +194,10 @@ public class XMLReport {
 			writer.flush();
 		} finally {
 			IOUtil.close(writer);
+			IOUtil.close(os);
+			// closes the file also when the compressor could not be created
+			IOUtil.close(fos);
+			tracer.end(TraceEvent.REPORT, reportFile.getName(), startTime);
 		}
 	}
 
@@ -304,7 +323,7 @@ public class XMLReport {
 			writeReruns(element, TEST_FAILURE_RERUN_ELEMENT, run);
 		}
 		Xpp3Dom failure = createElement(element, TEST_FAILURE_ELEMENT);
-		writeTestFailure(failure, report.getFailure());
+		writeTestFailure(failure, report);
 
 		return element;
 	}
@@ -327,7 +346,7 @@ public class XMLReport {
 			writeReruns(element, TEST_ERROR_RERUN_ELEMENT, run);
 		}
 		Xpp3Dom error = createElement(element, TEST_ERROR_ELEMENT);
-		writeTestError(error, report.getFailure());
+		writeTestError(error, report);
 
 		return element;
 	}
@@ -336,7 +355,7 @@ public class XMLReport {
 		Xpp3Dom rerunError = createElement(parent, elementName);
 		addOutputStreamElement(rerunError, report.getOut(), SurefireConstants.TEST_STDOUT_ELEMENT);
 		addOutputStreamElement(rerunError, report.getErr(), SurefireConstants.TEST_STDERR_ELEMENT);
-		writeTestError(rerunError, report.getFailure());
+		writeTestError(rerunError, report);
 	}
 
 	/**
@@ -430,7 +449,7 @@ public class XMLReport {
 
 				Xpp3Dom property = createElement(properties, PROPERTY_ELEMENT);
 				property.setAttribute(PROPERTY_NAME_ATTRIBUTE, key);
-				property.setAttribute(PROPERTY_VALUE_ATTRIBUTE, value);
+				property.setAttribute(PROPERTY_VALUE_ATTRIBUTE, XMLSanitizer.sanitize(value));
 			}
 		}
 	}
@@ -447,7 +466,7 @@ public class XMLReport {
 	 */
 	protected void addOutputStreamElement(Xpp3Dom parent, String stdOut, String name) {
 		if (stdOut != null && stdOut.trim().length() > 0) {
-			createElement(parent, name).setValue("<![CDATA[" + stdOut + "]]>");
+			createElement(parent, name).setValue(XMLSanitizer.cdata(stdOut));
 		}
 	}
 
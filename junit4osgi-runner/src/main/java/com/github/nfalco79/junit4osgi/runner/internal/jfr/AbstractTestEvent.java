@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal.jfr;
+
+import com.github.nfalco79.junit4osgi.runner.internal.FlightRecorderEvents.Span;
+
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Common fields of all test events.
+ *
+ * @author Nikolas Falco
+ */
+abstract class AbstractTestEvent extends Event implements Span {
+
+	@Label("Bundle")
+	String bundle;
+
+	@Label("Test Id")
+	String testId;
+
+	@Label("Outcome")
+	String outcome;
+
+	@Override
+	public void end(String outcome) {
+		this.outcome = outcome;
+		commit();
+	}
+
+}
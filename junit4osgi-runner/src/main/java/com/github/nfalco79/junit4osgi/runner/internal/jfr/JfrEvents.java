@@ -0,0 +1,73 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal.jfr;
+
+import com.github.nfalco79.junit4osgi.runner.internal.FlightRecorderEvents;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Flight Recorder implementation of the test events.
+ * <p>
+ * This class is compiled only with the {@code jfr} profile and it is loaded
+ * by name, it must not be referenced by other classes of the runner.
+ *
+ * @author Nikolas Falco
+ */
+public class JfrEvents extends FlightRecorderEvents {
+
+	@Override
+	public boolean isEnabled() {
+		return FlightRecorder.isAvailable();
+	}
+
+	@Override
+	public Span testClassStarted(String testId) {
+		return start(new TestClassEvent(), testId);
+	}
+
+	@Override
+	public Span testMethodStarted(String testId, String methodName) {
+		TestMethodEvent event = new TestMethodEvent();
+		event.methodName = methodName;
+		return start(event, testId);
+	}
+
+	@Override
+	public Span rerunStarted(String testId, int attempt, int testCount) {
+		TestRerunEvent event = new TestRerunEvent();
+		event.attempt = attempt;
+		event.testCount = testCount;
+		return start(event, testId);
+	}
+
+	@Override
+	public Span reportStarted(String testId) {
+		return start(new ReportWriteEvent(), testId);
+	}
+
+	private Span start(AbstractTestEvent event, String testId) {
+		if (!event.isEnabled()) {
+			// no recording is active for this event
+			return noSpan();
+		}
+		event.bundle = getBundle(testId);
+		event.testId = testId;
+		event.begin();
+		return event;
+	}
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.osgi.junit4osgi.TestRerun")
+@Label("Test Rerun")
+@Category("JUnit4OSGi")
+@Description("A rerun attempt of the failing tests of a test class")
+class TestRerunEvent extends AbstractTestEvent {
+
+	@Label("Attempt")
+	int attempt;
+
+	@Label("Test Count")
+	int testCount;
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal.xml.util;
+
+/**
+ * Replaces characters not allowed in an XML 1.0 document with a {@code ?}.
+ * <p>
+ * The text is scanned first using the {@link XMLChar} lookup table and a
+ * new string is allocated only if an invalid character is found. Surrogate
+ * pairs are kept when they compose a valid supplementary character, lone
+ * surrogates are replaced.
+ *
+ * @author Nikolas Falco
+ */
+public final class XMLSanitizer {
+
+	/** The character used in place of the invalid ones. */
+	public static final char REPLACEMENT = '?';
+
+	private static final String CDATA_START = "<![CDATA[";
+	private static final String CDATA_END = "]]>";
+	private static final String CDATA_END_SPLIT = "]]]]><![CDATA[>";
+
+	private XMLSanitizer() {
+	}
+
+	/**
+	 * Returns the given text without characters not allowed in XML.
+	 *
+	 * @param text
+	 *            to sanitize, could be {@code null}
+	 * @return the same instance if the text contains only valid characters,
+	 *         otherwise a copy where each invalid character is replaced
+	 */
+	public static String sanitize(String text) {
+		if (text == null) {
+			return null;
+		}
+
+		final int length = text.length();
+		int index = 0;
+		for (; index < length; index++) {
+			if (XMLChar.isInvalid(text.charAt(index))) {
+				int count = validCount(text, index);
+				if (count == 0) {
+					break;
+				}
+				// skip the low surrogate
+				index += count - 1;
+			}
+		}
+		if (index == length) {
+			return text;
+		}
+
+		// replacements are done in place, the original text is still used to
+		// check the characters ahead
+		char[] chars = text.toCharArray();
+		for (; index < length; index++) {
+			if (XMLChar.isInvalid(chars[index])) {
+				int count = validCount(text, index);
+				if (count == 0) {
+					chars[index] = REPLACEMENT;
+				} else {
+					index += count - 1;
+				}
+			}
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Returns the given text sanitized and wrapped in a CDATA section. Any
+	 * {@code ]]>} in the text is split across two sections so that it does
+	 * not terminate the CDATA early.
+	 *
+	 * @param text
+	 *            to wrap, could be {@code null}
+	 * @return the CDATA section or {@code null} if text is {@code null}
+	 */
+	public static String cdata(String text) {
+		if (text == null) {
+			return null;
+		}
+
+		String content = sanitize(text);
+		int end = content.indexOf(CDATA_END);
+		if (end == -1) {
+			return CDATA_START + content + CDATA_END;
+		}
+
+		StringBuilder sb = new StringBuilder(content.length() + CDATA_START.length() + CDATA_END.length() + CDATA_END_SPLIT.length());
+		sb.append(CDATA_START);
+		int start = 0;
+		while (end != -1) {
+			sb.append(content, start, end).append(CDATA_END_SPLIT);
+			start = end + CDATA_END.length();
+			end = content.indexOf(CDATA_END, start);
+		}
+		sb.append(content, start, content.length()).append(CDATA_END);
+		return sb.toString();
+	}
+
+	/*
+	 * Returns the number of chars that compose the valid character at the
+	 * given index, 0 if the character is invalid.
+	 */
+	private static int validCount(String text, int index) {
+		char c = text.charAt(index);
+		if (XMLChar.isValid(c)) {
+			return 1;
+		}
+		if (XMLChar.isHighSurrogate(c) && index + 1 < text.length()) {
+			char low = text.charAt(index + 1);
+			if (XMLChar.isLowSurrogate(low) && XML11Char.isXML11Valid(XMLChar.supplemental(c, low))) {
+				return 2;
+			}
+		}
+		return 0;
+	}
+
+}
@@ -89,6 +89,7 @@ public class ActivationTest {
 		runner.deactivate();
 		verify(jmxServer).stop();
 		verify(jmxServer).unregister(runner);
+		verify(jmxServer).unregister(runner.getMetrics());
 		verify(jmxServer).unregister(registry);
 	}
 
@@ -109,6 +110,7 @@ public class ActivationTest {
 		runner.activate();
 		verify(jmxServer).start();
 		verify(jmxServer).register(runner);
+		verify(jmxServer).register(runner.getMetrics());
 		verify(jmxServer).register(registry);
 	}
 
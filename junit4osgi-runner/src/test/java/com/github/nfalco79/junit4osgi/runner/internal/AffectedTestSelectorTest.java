@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleRevisions;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+public class AffectedTestSelectorTest {
+
+	@Test
+	public void select_tests_of_bundles_wired_to_any_revision() throws Exception {
+		Bundle library = mockBundle("library");
+		Bundle importer = mockBundle("importer");
+		Bundle requirer = mockBundle("requirer");
+		Bundle unrelated = mockBundle("unrelated");
+
+		// the previous revision is still used by the importer
+		BundleWiring oldWiring = mockWiring(library, Arrays.asList(mockWire(importer)), null);
+		BundleWiring newWiring = mockWiring(library, Collections.<BundleWire> emptyList(), Arrays.asList(mockWire(requirer), mockWire(library)));
+		mockRevisions(library, oldWiring, newWiring, null);
+
+		TestBean libraryTest = new TestBean(library, "org.example.LibraryTest");
+		TestBean importerTest = new TestBean(importer, "org.example.ImporterTest");
+		TestBean requirerTest = new TestBean(requirer, "org.example.RequirerTest");
+		TestBean unrelatedTest = new TestBean(unrelated, "org.example.UnrelatedTest");
+
+		AffectedTestSelector selector = new AffectedTestSelector(null, null);
+		assertEquals(2, selector.getDependentBundles(library).size());
+
+		List<TestBean> affected = selector.select(library, Arrays.asList(libraryTest, importerTest, requirerTest, unrelatedTest));
+		assertEquals(Arrays.asList(importerTest, requirerTest), affected);
+	}
+
+	@Test
+	public void apply_test_filter() throws Exception {
+		Bundle library = mockBundle("library");
+		Bundle importer = mockBundle("importer");
+		mockRevisions(library, mockWiring(library, Arrays.asList(mockWire(importer)), null));
+
+		TestBean test = new TestBean(importer, "org.example.ImporterTest");
+		TestBean excluded = new TestBean(importer, "org.example.internal.ImporterTest");
+
+		AffectedTestSelector selector = new AffectedTestSelector(new TestFilter(null, "*.internal.*"), null);
+		assertEquals(Arrays.asList(test), selector.select(library, Arrays.asList(test, excluded)));
+	}
+
+	@Test
+	public void bundle_without_revisions() throws Exception {
+		Bundle library = mockBundle("library");
+		assertTrue(new AffectedTestSelector(null, null).getDependentBundles(library).isEmpty());
+	}
+
+	private Bundle mockBundle(String symbolicName) throws Exception {
+		Bundle bundle = mock(Bundle.class);
+		when(bundle.getSymbolicName()).thenReturn(symbolicName);
+		when(bundle.getEntry(anyString())).thenReturn(new URL("file:/" + symbolicName));
+		return bundle;
+	}
+
+	private void mockRevisions(Bundle bundle, BundleWiring... wirings) {
+		BundleRevisions revisions = mock(BundleRevisions.class);
+		BundleRevision[] bundleRevisions = new BundleRevision[wirings.length];
+		for (int i = 0; i < wirings.length; i++) {
+			bundleRevisions[i] = mock(BundleRevision.class);
+			when(bundleRevisions[i].getWiring()).thenReturn(wirings[i]);
+		}
+		when(revisions.getRevisions()).thenReturn(Arrays.asList(bundleRevisions));
+		when(bundle.adapt(BundleRevisions.class)).thenReturn(revisions);
+	}
+
+	private BundleWiring mockWiring(Bundle bundle, List<BundleWire> packageWires, List<BundleWire> bundleWires) {
+		BundleWiring wiring = mock(BundleWiring.class);
+		when(wiring.getBundle()).thenReturn(bundle);
+		when(wiring.getProvidedWires(BundleRevision.PACKAGE_NAMESPACE)).thenReturn(packageWires);
+		when(wiring.getProvidedWires(BundleRevision.BUNDLE_NAMESPACE)).thenReturn(bundleWires);
+		return wiring;
+	}
+
+	private BundleWire mockWire(Bundle requirer) {
+		BundleWiring requirerWiring = mock(BundleWiring.class);
+		when(requirerWiring.getBundle()).thenReturn(requirer);
+		BundleWire wire = mock(BundleWire.class);
+		when(wire.getRequirerWiring()).thenReturn(requirerWiring);
+		return wire;
+	}
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class FlightRecorderEventsTest {
+
+	@Test
+	public void bundle_from_test_id() {
+		assertEquals("my.bundle", FlightRecorderEvents.getBundle("my.bundle@org.example.MyTest"));
+		assertNull(FlightRecorderEvents.getBundle("org.example.MyTest"));
+		assertNull(FlightRecorderEvents.getBundle(null));
+	}
+
+	@Test
+	public void events_never_fail() {
+		FlightRecorderEvents events = FlightRecorderEvents.getInstance();
+		assertNotNull(events);
+
+		events.testClassStarted("my.bundle@org.example.MyTest").end(FlightRecorderEvents.PASSED);
+		events.testMethodStarted("my.bundle@org.example.MyTest", "test").end(FlightRecorderEvents.FAILED);
+		events.rerunStarted(null, 1, 1).end(FlightRecorderEvents.PASSED);
+		events.reportStarted(null).end(FlightRecorderEvents.ERROR);
+	}
+
+}
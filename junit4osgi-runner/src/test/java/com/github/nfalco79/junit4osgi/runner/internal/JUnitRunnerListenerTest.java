@@ -34,6 +34,7 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.osgi.service.log.LogService;
 
+import com.github.nfalco79.junit4osgi.registry.spi.BatchTestRegistryChangeListener;
 import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistry;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryChangeListener;
@@ -137,6 +138,51 @@ public class JUnitRunnerListenerTest {
 		verify(testQueue).remove(registryTests[1]);
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void fire_batch_of_events() throws Exception {
+		LogService logService = mock(LogService.class);
+
+		TestBean[] registryTests = getMockTests();
+		final List<TestRegistryChangeListener> runnerListener = new ArrayList<TestRegistryChangeListener>(1);
+
+		TestRegistry registry = mock(TestRegistry.class);
+		when(registry.getTests()).thenReturn(Collections.<TestBean>emptySet());
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				runnerListener.add((TestRegistryChangeListener) invocation.getArgument(0));
+				return null;
+			}
+		}).when(registry).addTestRegistryListener(any(TestRegistryChangeListener.class));
+
+		JUnitRunner runner = spy(new JUnitRunnerNoJMXServer());
+		when(runner.getRepeatTime()).thenReturn(1l);
+		when(runner.getInfiniteRunnable(any(File.class), any(Queue.class))).thenReturn(mock(Runnable.class));
+
+		runner.setLog(logService);
+		runner.setRegistry(registry);
+		runner.start();
+
+		BatchTestRegistryChangeListener listener = (BatchTestRegistryChangeListener) runnerListener.get(0);
+
+		Field field = ReflectionUtils.getFieldByNameIncludingSuperclasses("tests", listener.getClass());
+		field.setAccessible(true);
+		Queue<TestBean> testQueue = (Queue<TestBean>) field.get(listener);
+
+		listener.registryChanged(Arrays.asList(new TestRegistryEvent(TestRegistryEventType.ADD, registryTests[0]), //
+				new TestRegistryEvent(TestRegistryEventType.ADD, registryTests[1]), //
+				new TestRegistryEvent(TestRegistryEventType.REMOVE, registryTests[0])));
+		Assert.assertEquals(Arrays.asList(registryTests[1]), new ArrayList<TestBean>(testQueue));
+
+		// a test removed and added again by the same batch is enqueued
+		listener.registryChanged(Arrays.asList(new TestRegistryEvent(TestRegistryEventType.REMOVE, registryTests[1]), //
+				new TestRegistryEvent(TestRegistryEventType.ADD, registryTests[1])));
+		Assert.assertEquals(Arrays.asList(registryTests[1]), new ArrayList<TestBean>(testQueue));
+
+		runner.stop();
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test(expected = IllegalArgumentException.class)
 	public void test_event_with_invalid_argument() throws Exception {
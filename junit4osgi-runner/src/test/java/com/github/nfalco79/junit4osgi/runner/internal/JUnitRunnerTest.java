@@ -21,10 +21,14 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 import java.io.File;
+import java.net.URL;
+import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.Hashtable;
 import java.util.LinkedHashSet;
 import java.util.Queue;
 import java.util.Set;
+import java.util.Vector;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -33,10 +37,12 @@ import org.example.AbstractTest;
 import org.example.ErrorTest;
 import org.example.ExceptionOnClassMethodsTest;
 import org.example.FlakyJUnit4Test;
+import org.example.HangingTest;
 import org.example.JUnit3Test;
 import org.example.MainClassTest;
 import org.example.SimpleSuiteTest;
 import org.example.SimpleTestCase;
+import org.codehaus.plexus.util.FileUtils;
 import org.hamcrest.CoreMatchers;
 import org.hamcrest.Matchers;
 import org.junit.Rule;
@@ -44,18 +50,22 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.junit.runner.Description;
 import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
 import org.junit.runner.notification.Failure;
 import org.junit.runner.notification.RunListener;
 import org.mockito.Mockito;
 import org.mockito.internal.util.collections.Sets;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.BundleWiring;
 import org.osgi.service.log.LogService;
 
 import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistry;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryChangeListener;
 import com.github.nfalco79.junit4osgi.runner.spi.TestRunnerNotifier;
+import com.github.nfalco79.junit4osgi.runner.test.report.SurefireHelper;
 
 public class JUnitRunnerTest {
 
@@ -105,6 +115,224 @@ public class JUnitRunnerTest {
 		verify(registry).removeTestRegistryListener(any(TestRegistryChangeListener.class));
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void resume_skips_completed_tests() throws Exception {
+		LogService logService = mock(LogService.class);
+
+		final Set<TestBean> registryTests = getMockTests();
+		TestRegistry registry = mock(TestRegistry.class);
+		when(registry.getTests()).thenReturn(registryTests);
+
+		File reportsDirectory = folder.newFolder();
+		RunCheckpoint checkpoint = new RunCheckpoint(new File(reportsDirectory, RunCheckpoint.FILE_NAME));
+		checkpoint.completed("id1", false);
+
+		final AtomicInteger counter = new AtomicInteger(0);
+
+		JUnitRunner runner = spy(new JUnitRunnerNoJMXServer());
+		when(runner.getInfiniteRunnable(any(File.class), any(Queue.class))).thenAnswer(new Answer<Runnable>() {
+			@Override
+			public Runnable answer(InvocationOnMock invocation) throws Throwable {
+				Queue<TestBean> tests = (Queue<TestBean>) invocation.getArgument(1);
+				assertThat(tests.size(), CoreMatchers.is(1));
+				assertThat(tests.peek().getId(), CoreMatchers.is("id2"));
+				return new Runnable() {
+					@Override
+					public void run() {
+						counter.incrementAndGet();
+					}
+				};
+			}
+		});
+
+		runner.setLog(logService);
+		runner.setRegistry(registry);
+		runner.resume(reportsDirectory.getAbsolutePath());
+		runner.stop();
+
+		verify(runner).getInfiniteRunnable(any(File.class), any(Queue.class));
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void autostart_resumes_a_run_interrupted_by_a_restart() throws Exception {
+		final TestBean test1 = mock(TestBean.class);
+		when(test1.getId()).thenReturn("id1");
+		when(test1.getName()).thenReturn(SimpleTestCase.class.getName());
+		when(test1.getTestClass()).thenReturn((Class) SimpleTestCase.class);
+		final TestBean test2 = mock(TestBean.class);
+		when(test2.getId()).thenReturn("id2");
+		when(test2.getName()).thenReturn(JUnit3Test.class.getName());
+
+		TestRegistry registry = mock(TestRegistry.class);
+		when(registry.getTests()).thenReturn(asSet(test1, test2));
+
+		File reportsDirectory = folder.newFolder();
+		System.setProperty(JUnitRunner.RUNNER_AUTOSTART, "true");
+		System.setProperty(JUnitRunner.REPORT_PATH, reportsDirectory.getAbsolutePath());
+		try {
+			final CountDownLatch latch = new CountDownLatch(1);
+			final JUnitRunner runner = new JUnitRunnerNoJMXServer() {
+				@Override
+				protected Runnable getInfiniteRunnable(File reportsDirectory, Queue<TestBean> tests) {
+					final Runnable realRunnable = super.getInfiniteRunnable(reportsDirectory, tests);
+					return new Runnable() {
+						@Override
+						public void run() {
+							realRunnable.run();
+							latch.countDown();
+						}
+					};
+				}
+			};
+			// the container goes down after the first test class
+			when(test2.getTestClass()).thenAnswer(new Answer<Class<?>>() {
+				@Override
+				public Class<?> answer(InvocationOnMock invocation) throws Throwable {
+					runner.stop();
+					throw new ClassNotFoundException(JUnit3Test.class.getName());
+				}
+			});
+			runner.setLog(mock(LogService.class));
+			runner.setRegistry(registry);
+			runner.activate();
+			assertTrue("Run not completed", latch.await(10, TimeUnit.SECONDS));
+			runner.stop();
+			assertTrue("Checkpoint not written", new File(reportsDirectory, RunCheckpoint.FILE_NAME).isFile());
+
+			final Set<String> queued = new HashSet<String>();
+			JUnitRunner restarted = spy(new JUnitRunnerNoJMXServer());
+			when(restarted.getInfiniteRunnable(any(File.class), any(Queue.class))).thenAnswer(new Answer<Runnable>() {
+				@Override
+				public Runnable answer(InvocationOnMock invocation) throws Throwable {
+					for (TestBean test : (Queue<TestBean>) invocation.getArgument(1)) {
+						queued.add(test.getId());
+					}
+					return mock(Runnable.class);
+				}
+			});
+			restarted.setLog(mock(LogService.class));
+			restarted.setRegistry(registry);
+			restarted.activate();
+			restarted.stop();
+
+			assertEquals(Sets.newSet("id2"), queued);
+		} finally {
+			System.clearProperty(JUnitRunner.RUNNER_AUTOSTART);
+			System.clearProperty(JUnitRunner.REPORT_PATH);
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void completed_run_removes_the_checkpoint() throws Exception {
+		final TestBean testToRun = mock(TestBean.class);
+		when(testToRun.getId()).thenReturn("id1");
+		when(testToRun.getName()).thenReturn(SimpleTestCase.class.getName());
+		when(testToRun.getTestClass()).thenReturn((Class) SimpleTestCase.class);
+
+		TestRegistry registry = mock(TestRegistry.class);
+		when(registry.getTests()).thenReturn(asSet(testToRun));
+
+		File reportsDirectory = folder.newFolder();
+		File checkpointFile = new File(reportsDirectory, RunCheckpoint.FILE_NAME);
+		new RunCheckpoint(checkpointFile).completed("id0", false);
+
+		final CountDownLatch latch = new CountDownLatch(1);
+		JUnitRunner runner = new JUnitRunnerNoJMXServer() {
+			@Override
+			protected Runnable getInfiniteRunnable(File reportsDirectory, Queue<TestBean> tests) {
+				final Runnable realRunnable = super.getInfiniteRunnable(reportsDirectory, tests);
+				return new Runnable() {
+					@Override
+					public void run() {
+						realRunnable.run();
+						latch.countDown();
+					}
+				};
+			}
+		};
+		runner.setLog(mock(LogService.class));
+		runner.setRegistry(registry);
+		runner.resume(reportsDirectory.getAbsolutePath());
+		try {
+			assertTrue("Run not completed", latch.await(10, TimeUnit.SECONDS));
+		} finally {
+			runner.stop();
+		}
+
+		assertTrue(new File(reportsDirectory, "TEST-" + SimpleTestCase.class.getName() + ".xml").isFile());
+		assertFalse("Checkpoint of the completed run not removed", checkpointFile.exists());
+	}
+
+	@Test
+	public void shards_do_not_depend_on_the_local_history() throws Exception {
+		Set<TestBean> registryTests = new LinkedHashSet<TestBean>();
+		for (int i = 0; i < 20; i++) {
+			TestBean test = mock(TestBean.class);
+			when(test.getId()).thenReturn("bundle@org.example.Test" + i);
+			when(test.getName()).thenReturn("org.example.Test" + i);
+			registryTests.add(test);
+		}
+		TestRegistry registry = mock(TestRegistry.class);
+		when(registry.getTests()).thenReturn(registryTests);
+
+		// each instance knows only the durations of the tests it has run
+		File local0File = folder.newFile();
+		File local1File = folder.newFile();
+		File sharedFile = folder.newFile();
+		TestHistory local0 = new TestHistory(local0File);
+		TestHistory local1 = new TestHistory(local1File);
+		TestHistory shared = new TestHistory(sharedFile);
+		int i = 0;
+		for (TestBean test : registryTests) {
+			(i % 2 == 0 ? local0 : local1).setElapsedTime(test.getId(), 100 * i);
+			shared.setElapsedTime(test.getId(), 100 * i);
+			i++;
+		}
+		local0.store();
+		local1.store();
+		shared.store();
+
+		for (String durations : asList(null, sharedFile.getAbsolutePath())) {
+			Set<TestBean> shard0 = runShard(registry, local0File, durations, 0);
+			Set<TestBean> shard1 = runShard(registry, local1File, durations, 1);
+
+			Set<TestBean> all = new HashSet<TestBean>(shard0);
+			all.addAll(shard1);
+			assertEquals(registryTests, all);
+			assertEquals(registryTests.size(), shard0.size() + shard1.size());
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Set<TestBean> runShard(TestRegistry registry, File historyFile, String durations, int index) throws Exception {
+		final Set<TestBean> queued = new HashSet<TestBean>();
+
+		System.setProperty(JUnitRunner.HISTORY_PATH, historyFile.getAbsolutePath());
+		JUnitRunner runner;
+		try {
+			runner = spy(new JUnitRunnerNoJMXServer());
+		} finally {
+			System.clearProperty(JUnitRunner.HISTORY_PATH);
+		}
+		when(runner.getInfiniteRunnable(any(File.class), any(Queue.class))).thenAnswer(new Answer<Runnable>() {
+			@Override
+			public Runnable answer(InvocationOnMock invocation) throws Throwable {
+				queued.addAll((Queue<TestBean>) invocation.getArgument(1));
+				return mock(Runnable.class);
+			}
+		});
+		runner.setLog(mock(LogService.class));
+		runner.setRegistry(registry);
+		runner.setShard(index, 2);
+		runner.setShardDurations(durations);
+		runner.start((String[]) null, folder.newFolder().getAbsolutePath(), null);
+		runner.stop();
+		return queued;
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test
 	public void run_a_test() throws Exception {
@@ -178,6 +406,84 @@ public class JUnitRunnerTest {
 
 		verify(listener, times(6)).testStarted(any(Description.class));
 		verify(listener, times(5)).testFailure(any(Failure.class));
+		// failed methods of the same class are rerun together
+		assertEquals(3, FlakyJUnit4Test.beforeClassCount);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void skip_remaining_tests_after_failures() throws Exception {
+		final TestBean test1ToRun = mock(TestBean.class);
+		when(test1ToRun.getId()).thenReturn("id1");
+		when(test1ToRun.getTestClass()).thenReturn((Class) ErrorTest.class);
+
+		final TestBean test2ToRun = mock(TestBean.class);
+		when(test2ToRun.getId()).thenReturn("id2");
+		when(test2ToRun.getTestClass()).thenReturn((Class) SimpleTestCase.class);
+
+		JUnitRunner runner = new StartAndStopJUnitRunner();
+		runner.setSkipAfterFailureCount(1);
+
+		File tmpFolder = folder.newFolder();
+		runTest(runner, tmpFolder, test1ToRun, test2ToRun);
+
+		assertThat("Tests has run", tmpFolder.list(), Matchers.arrayWithSize(2));
+		assertTrue(new File(tmpFolder, "TEST-" + ErrorTest.class.getName() + ".xml").isFile());
+		// the dropped test is reported as skipped
+		File skipped = new File(tmpFolder, "TEST-" + SimpleTestCase.class.getName() + ".xml");
+		assertThat(FileUtils.fileRead(skipped), CoreMatchers.containsString(JUnitRunner.SKIPPED_AFTER_FAILURES));
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void collect_runner_metrics() throws Exception {
+		final TestBean testToRun = mock(TestBean.class);
+		when(testToRun.getId()).thenReturn("id1");
+		when(testToRun.getTestClass()).thenReturn((Class) ErrorTest.class);
+
+		JUnitRunner runner = new StartAndStopJUnitRunner();
+		runTest(runner, folder.newFolder(), testToRun);
+
+		RunnerMetrics metrics = runner.getMetrics();
+		assertEquals(3, metrics.getMethodsStarted());
+		assertEquals(3, metrics.getMethodsFinished());
+		assertEquals(2, metrics.getMethodsFailed());
+		assertEquals(1, metrics.getClassesFinished());
+		assertEquals(0, metrics.getQueueDepth());
+		assertEquals(0, metrics.getReportBacklog());
+		assertEquals(0, metrics.getCurrentTests().length);
+		// the worker of the completed run does not exist anymore
+		assertEquals(0, metrics.getWorkerUtilization().length);
+		assertThat(metrics.getClassDurationP99(), Matchers.greaterThanOrEqualTo(metrics.getClassDurationP50()));
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test(timeout = 20000)
+	public void abandon_test_that_exceeds_timeout() throws Exception {
+		final TestBean test1ToRun = mock(TestBean.class);
+		when(test1ToRun.getId()).thenReturn("id1");
+		when(test1ToRun.getTestClass()).thenReturn((Class) HangingTest.class);
+
+		final TestBean test2ToRun = mock(TestBean.class);
+		when(test2ToRun.getId()).thenReturn("id2");
+		when(test2ToRun.getTestClass()).thenReturn((Class) SimpleTestCase.class);
+
+		JUnitRunner runner = new StartAndStopJUnitRunner();
+		runner.setTestTimeout(1000);
+
+		File tmpFolder = folder.newFolder();
+		try {
+			runTest(runner, tmpFolder, test1ToRun, test2ToRun);
+		} finally {
+			HangingTest.RELEASE.countDown();
+		}
+
+		assertThat("Tests has run", tmpFolder.list(), Matchers.arrayWithSize(2));
+		assertTrue(new File(tmpFolder, "TEST-" + SimpleTestCase.class.getName() + ".xml").isFile());
+
+		String report = FileUtils.fileRead(new File(tmpFolder, "TEST-" + HangingTest.class.getName() + ".xml"));
+		assertThat(report, CoreMatchers.containsString(TestTimeoutException.class.getName()));
+		assertThat(report, CoreMatchers.containsString("JUnitRunner-worker"));
 	}
 
 	@SuppressWarnings({ "unchecked", "rawtypes" })
@@ -261,6 +567,98 @@ public class JUnitRunnerTest {
 		return listener;
 	}
 
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void result_cache_skips_unchanged_green_tests() throws Exception {
+		final Bundle bundle = mock(Bundle.class);
+		when(bundle.getBundleId()).thenReturn(5l);
+		when(bundle.getSymbolicName()).thenReturn("acme");
+		when(bundle.getHeaders()).thenReturn(new Hashtable<String, String>());
+		when(bundle.findEntries("/", "*", true)).thenAnswer(new Answer<Enumeration<URL>>() {
+			@Override
+			public Enumeration<URL> answer(InvocationOnMock invocation) throws Throwable {
+				return new Vector<URL>(asList(SimpleTestCase.class.getResource("SimpleTestCase.class"))).elements();
+			}
+		});
+		when(bundle.adapt(BundleWiring.class)).thenReturn(mock(BundleWiring.class));
+
+		final TestBean testToRun = mock(TestBean.class);
+		when(testToRun.getId()).thenReturn("acme@" + SimpleTestCase.class.getName());
+		when(testToRun.getName()).thenReturn(SimpleTestCase.class.getName());
+		when(testToRun.getTestClass()).thenReturn((Class) SimpleTestCase.class);
+		when(testToRun.getBundle()).thenReturn(bundle);
+
+		File tmpFolder = folder.newFolder();
+		File report = new File(tmpFolder, "TEST-" + SimpleTestCase.class.getName() + ".xml");
+		int testCount = Request.aClass(SimpleTestCase.class).getRunner().testCount();
+
+		System.setProperty(JUnitRunner.RESULT_CACHE, "true");
+		try {
+			runAll(tmpFolder, testToRun);
+			new SurefireHelper(report).verifySuite(SimpleTestCase.class.getName(), testCount, 0, 0, 0);
+			assertTrue("Result cache not written", new File(tmpFolder, TestResultCache.FILE_NAME).isFile());
+
+			runAll(tmpFolder, testToRun);
+			new SurefireHelper(report).verifySuite(SimpleTestCase.class.getName(), testCount, 0, 0, testCount);
+			assertThat(FileUtils.fileRead(report), CoreMatchers.containsString(TestResultCache.SKIPPED_CACHED));
+
+			// a test requested explicitly is always executed
+			runTest(new StartAndStopJUnitRunner(), tmpFolder, testToRun);
+			new SurefireHelper(report).verifySuite(SimpleTestCase.class.getName(), testCount, 0, 0, 0);
+		} finally {
+			System.clearProperty(JUnitRunner.RESULT_CACHE);
+		}
+	}
+
+	/*
+	 * Runs all registry tests as the autostart does and waits the queue is
+	 * processed.
+	 */
+	private void runAll(File destination, TestBean... testsToRun) throws Exception {
+		TestRegistry registry = mock(TestRegistry.class);
+		when(registry.getTests()).thenReturn(asSet(testsToRun));
+
+		final CountDownLatch latch = new CountDownLatch(1);
+		JUnitRunner runner = new JUnitRunnerNoJMXServer() {
+			@Override
+			protected Runnable getInfiniteRunnable(File reportsDirectory, Queue<TestBean> tests) {
+				final Runnable realRunnable = super.getInfiniteRunnable(reportsDirectory, tests);
+				return new Runnable() {
+					@Override
+					public void run() {
+						realRunnable.run();
+						latch.countDown();
+					}
+				};
+			}
+		};
+		runner.setLog(mock(LogService.class));
+		runner.setRegistry(registry);
+		runner.start((String[]) null, destination.getAbsolutePath(), null);
+		try {
+			assertTrue("Run not completed", latch.await(10, TimeUnit.SECONDS));
+		} finally {
+			runner.stop();
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void invalid_report_compression_falls_back_to_none() throws Exception {
+		final TestBean testToRun = mock(TestBean.class);
+		when(testToRun.getId()).thenReturn("id1");
+		when(testToRun.getTestClass()).thenReturn((Class) SimpleTestCase.class);
+
+		File tmpFolder = folder.newFolder();
+		System.setProperty(JUnitRunner.REPORT_COMPRESSION, "zip");
+		try {
+			runTest(new StartAndStopJUnitRunner(), tmpFolder, testToRun);
+		} finally {
+			System.clearProperty(JUnitRunner.REPORT_COMPRESSION);
+		}
+		assertTrue(new File(tmpFolder, "TEST-" + SimpleTestCase.class.getName() + ".xml").isFile());
+	}
+
 	@Test
 	public void test_include_properties() {
 		System.setProperty(JUnitRunner.PATH_INCLUDES, "org.example.ErrorTest,org.example.Foo  org.example.JUnit3Test");
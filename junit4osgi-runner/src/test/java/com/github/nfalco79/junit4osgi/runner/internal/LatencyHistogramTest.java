@@ -0,0 +1,57 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void bucket_upper_bound_contains_value() {
+		for (long value : new long[] { 0, 1, 7, 8, 9, 15, 16, 17, 100, 1000, 123456789, Long.MAX_VALUE }) {
+			int index = LatencyHistogram.indexOf(value);
+			assertTrue("value " + value, LatencyHistogram.upperBoundOf(index) >= value);
+			if (index > 0) {
+				assertTrue("value " + value, LatencyHistogram.upperBoundOf(index - 1) < value);
+			}
+		}
+	}
+
+	@Test
+	public void percentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(50));
+
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+		assertEquals(1000, histogram.getCount());
+
+		assertPercentile(500, histogram.getPercentile(50));
+		assertPercentile(950, histogram.getPercentile(95));
+		assertPercentile(990, histogram.getPercentile(99));
+		assertPercentile(1000, histogram.getPercentile(100));
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+	}
+
+	private void assertPercentile(long expected, long actual) {
+		assertTrue("expected " + expected + " but was " + actual, actual >= expected && actual <= expected * 1.125);
+	}
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+public class PriorityTestQueueTest {
+
+	@Test
+	public void fifo_without_duplicates() {
+		TestBean test1 = mockTest("org.example.Test1");
+		TestBean test2 = mockTest("org.example.Test2");
+
+		PriorityTestQueue queue = new PriorityTestQueue(null);
+		assertTrue(queue.add(test1));
+		assertTrue(queue.add(test2));
+		assertFalse(queue.add(test1));
+		assertEquals(2, queue.size());
+
+		assertSame(test1, queue.peek());
+		assertSame(test1, queue.poll());
+		assertSame(test2, queue.poll());
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void remove_the_given_test() {
+		TestBean test1 = mockTest("org.example.Test1");
+		TestBean test2 = mockTest("org.example.Test2");
+		TestBean test3 = mockTest("org.example.Test3");
+
+		PriorityTestQueue queue = new PriorityTestQueue(null);
+		queue.addAll(asList(test1, test2, test3));
+
+		queue.remove(test2);
+		assertFalse(queue.contains(test2));
+		assertEquals(asList(test1, test3), new ArrayList<TestBean>(queue));
+
+		queue.removeAll(asList(test1, test3));
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void filtered_tests_are_not_enqueued() {
+		TestBean test = mockTest("org.example.FooTest");
+		TestBean excluded = mockTest("org.example.internal.BarTest");
+
+		PriorityTestQueue queue = new PriorityTestQueue(new TestFilter(null, "*.internal.*"));
+		assertTrue(queue.offer(test));
+		assertFalse(queue.offer(excluded));
+		assertEquals(asList(test), new ArrayList<TestBean>(queue));
+	}
+
+	@Test
+	public void add_and_add_all_assign_the_same_shard() {
+		TestHistory history = new TestHistory(null);
+		List<TestBean> tests = new ArrayList<TestBean>();
+		for (int i = 0; i < 20; i++) {
+			TestBean test = mockTest("org.example.Test" + i);
+			// only some tests are weighted, the others are hashed
+			if (i % 2 == 0) {
+				history.setElapsedTime(test.getId(), 100 * i);
+			}
+			tests.add(test);
+		}
+
+		for (int i = 0; i < 3; i++) {
+			TestShard shard = new TestShard(i, 3, history);
+			PriorityTestQueue bulk = new PriorityTestQueue(null, shard, history, Collections.<TestOrder> emptyList());
+			bulk.addAll(tests);
+			PriorityTestQueue single = new PriorityTestQueue(null, shard, history, Collections.<TestOrder> emptyList());
+			for (TestBean test : tests) {
+				single.add(test);
+			}
+			assertEquals(new ArrayList<TestBean>(single), new ArrayList<TestBean>(bulk));
+		}
+	}
+
+	@Test
+	public void iterator_works_on_a_snapshot() {
+		List<TestBean> tests = new ArrayList<TestBean>();
+		for (int i = 0; i < 5; i++) {
+			tests.add(mockTest("org.example.Test" + i));
+		}
+
+		PriorityTestQueue queue = new PriorityTestQueue(null);
+		queue.addAll(tests);
+
+		Iterator<TestBean> it = queue.iterator();
+		while (it.hasNext()) {
+			TestBean test = it.next();
+			// concurrent modifications do not break the iteration
+			queue.poll();
+			if (test == tests.get(4)) {
+				it.remove();
+			}
+		}
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void failures_first_then_longest() {
+		TestBean fast = mockTest("org.example.FastTest");
+		TestBean slow = mockTest("org.example.SlowTest");
+		TestBean unknown = mockTest("org.example.UnknownTest");
+		TestBean failed = mockTest("org.example.FailedTest");
+
+		TestHistory history = new TestHistory(null);
+		history.setElapsedTime(fast.getId(), 10);
+		history.setElapsedTime(slow.getId(), 1000);
+		history.setElapsedTime(failed.getId(), 1);
+		history.setFailed(failed.getId(), true);
+
+		PriorityTestQueue queue = new PriorityTestQueue(null, null, history, asList(TestOrder.FAILURES, TestOrder.DURATION));
+		queue.addAll(asList(fast, slow, unknown, failed));
+
+		assertSame(failed, queue.peek());
+		assertEquals(asList(failed, unknown, slow, fast), new ArrayList<TestBean>(queue));
+		assertEquals(asList(failed, unknown, slow, fast), drain(queue));
+	}
+
+	@Test
+	public void group_by_bundle_keeping_insertion_order() {
+		TestBean test1 = mockTest("org.example.Test1", 2);
+		TestBean test2 = mockTest("org.example.Test2", 1);
+		TestBean test3 = mockTest("org.example.Test3", 2);
+		TestBean test4 = mockTest("org.example.Test4", 1);
+
+		PriorityTestQueue queue = new PriorityTestQueue(null, null, null, asList(TestOrder.BUNDLE));
+		queue.addAll(asList(test1, test2, test3, test4));
+
+		assertEquals(asList(test2, test4, test1, test3), drain(queue));
+	}
+
+	@Test
+	public void higher_priority_first() {
+		Hashtable<String, String> headers = new Hashtable<String, String>();
+		headers.put(TestOrder.PRIORITY_HEADER, "org.example.HighTest=10, org.example.LowTest=-1, *=5");
+		Bundle bundle = mock(Bundle.class);
+		when(bundle.getHeaders()).thenReturn(headers);
+
+		TestBean low = mockTest("org.example.LowTest", bundle);
+		TestBean other = mockTest("org.example.OtherTest", bundle);
+		TestBean high = mockTest("org.example.HighTest", bundle);
+
+		PriorityTestQueue queue = new PriorityTestQueue(null, null, null, asList(TestOrder.PRIORITY));
+		queue.addAll(asList(low, other, high));
+
+		assertEquals(asList(high, other, low), drain(queue));
+	}
+
+	@Test
+	public void concurrent_producers_and_consumers() throws Exception {
+		final int producerCount = 4;
+		final int testCount = 1000;
+		final List<TestBean> tests = new ArrayList<TestBean>();
+		for (int i = 0; i < testCount; i++) {
+			tests.add(mockTest("org.example.Test" + i));
+		}
+
+		TestHistory history = new TestHistory(null);
+		for (int i = 0; i < testCount; i++) {
+			history.setElapsedTime(tests.get(i).getId(), i);
+		}
+		final PriorityTestQueue queue = new PriorityTestQueue(null, null, history, asList(TestOrder.DURATION));
+		final Set<TestBean> polled = Collections.newSetFromMap(new ConcurrentHashMap<TestBean, Boolean>());
+		final CountDownLatch produced = new CountDownLatch(producerCount);
+
+		ExecutorService executor = Executors.newFixedThreadPool(producerCount * 2);
+		try {
+			for (int p = 0; p < producerCount; p++) {
+				final int offset = p;
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						// each test is offered by all producers
+						for (int i = 0; i < testCount; i++) {
+							queue.offer(tests.get((i + offset * 250) % testCount));
+						}
+						produced.countDown();
+					}
+				});
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						while (produced.getCount() > 0 || !queue.isEmpty()) {
+							TestBean test = queue.poll();
+							if (test != null) {
+								polled.add(test);
+							}
+						}
+					}
+				});
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue("Workers did not complete", executor.awaitTermination(10, TimeUnit.SECONDS));
+
+		assertTrue(queue.isEmpty());
+		assertNull(queue.poll());
+		assertEquals(testCount, polled.size());
+	}
+
+	private List<TestBean> drain(PriorityTestQueue queue) {
+		List<TestBean> tests = new ArrayList<TestBean>();
+		TestBean test;
+		while ((test = queue.poll()) != null) {
+			tests.add(test);
+		}
+		return tests;
+	}
+
+	private TestBean mockTest(String name, long bundleId) {
+		Bundle bundle = mock(Bundle.class);
+		when(bundle.getBundleId()).thenReturn(bundleId);
+		return mockTest(name, bundle);
+	}
+
+	private TestBean mockTest(String name, Bundle bundle) {
+		TestBean test = mockTest(name);
+		when(test.getBundle()).thenReturn(bundle);
+		return test;
+	}
+
+	private TestBean mockTest(String name) {
+		TestBean test = mock(TestBean.class);
+		when(test.getName()).thenReturn(name);
+		when(test.getId()).thenReturn("bundle@" + name);
+		return test;
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.example.ErrorTest;
+import org.example.SimpleTestCase;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.JUnitCore;
+
+import com.github.nfalco79.junit4osgi.runner.internal.Report.FailureType;
+
+public class ReportJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void recover_only_interrupted_classes() throws Exception {
+		File file = new File(folder.newFolder(), ReportJournal.FILE_NAME);
+
+		ReportJournal journal = new ReportJournal(file, 1);
+		run(journal, SimpleTestCase.class);
+		journal.classFinished("bundle@" + SimpleTestCase.class.getName());
+		run(journal, ErrorTest.class);
+		journal.close();
+
+		assertNull(journal.getError());
+		assertTrue("Journal with interrupted classes deleted", file.isFile());
+
+		Collection<Report> reports = ReportJournal.recover(file);
+		assertEquals(1, reports.size());
+
+		Report report = reports.iterator().next();
+		assertEquals(ErrorTest.class.getName(), report.getDescription().getClassName());
+		assertEquals(7, report.getRunCount());
+
+		List<FailureType> types = new ArrayList<FailureType>();
+		for (Report child : report.getChildren()) {
+			types.add(child.getType());
+		}
+		assertEquals(1, count(types, FailureType.FAILURE));
+		assertEquals(4, count(types, FailureType.IGNORE));
+		// the error of the test and the interrupted marker
+		assertEquals(2, count(types, FailureType.ERROR));
+
+		Report interrupted = report.getChildren().get(report.getChildren().size() - 1);
+		assertEquals(ReportJournal.INTERRUPTED_TEST, interrupted.getDescription().getMethodName());
+
+		// the recovered report could be written as a Surefire report
+		File reportsDirectory = folder.newFolder();
+		new XMLReport(reportsDirectory).generateReport(report);
+		assertTrue(new File(reportsDirectory, "TEST-" + ErrorTest.class.getName() + ".xml").isFile());
+	}
+
+	@Test
+	public void delete_journal_when_all_classes_completed() throws Exception {
+		File file = new File(folder.newFolder(), ReportJournal.FILE_NAME);
+
+		ReportJournal journal = new ReportJournal(file, 16);
+		run(journal, SimpleTestCase.class);
+		journal.classFinished("bundle@" + SimpleTestCase.class.getName());
+		journal.close();
+
+		assertFalse("Journal not deleted", file.exists());
+		assertTrue(ReportJournal.recover(file).isEmpty());
+	}
+
+	@Test
+	public void ignore_truncated_record() throws Exception {
+		File file = new File(folder.newFolder(), ReportJournal.FILE_NAME);
+
+		ReportJournal journal = new ReportJournal(file, 1);
+		run(journal, SimpleTestCase.class);
+		journal.close();
+
+		// simulate a crash while the last record was written
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(raf.length() - 3);
+		} finally {
+			raf.close();
+		}
+
+		Collection<Report> reports = ReportJournal.recover(file);
+		assertEquals(1, reports.size());
+		// two complete methods plus the interrupted marker
+		assertEquals(3, reports.iterator().next().getChildren().size());
+	}
+
+	@Test
+	public void class_boundaries_are_written_without_waiting_the_batch() throws Exception {
+		File file = new File(folder.newFolder(), ReportJournal.FILE_NAME);
+
+		ReportJournal journal = new ReportJournal(file, Integer.MAX_VALUE);
+		try {
+			String testId = "bundle@" + ErrorTest.class.getName();
+			journal.classStarted(testId, ErrorTest.class.getName());
+
+			// the journal is still open, as when the container dies
+			Collection<Report> reports = ReportJournal.recover(file);
+			assertEquals(1, reports.size());
+			assertEquals(ErrorTest.class.getName(), reports.iterator().next().getDescription().getClassName());
+
+			journal.classFinished(testId);
+			assertTrue(ReportJournal.recover(file).isEmpty());
+		} finally {
+			journal.close();
+		}
+	}
+
+	private void run(ReportJournal journal, Class<?> testClass) {
+		String testId = "bundle@" + testClass.getName();
+		journal.classStarted(testId, testClass.getName());
+
+		JUnitCore core = new JUnitCore();
+		core.addListener(new ReportListener(testId, journal));
+		core.run(testClass);
+	}
+
+	private int count(List<FailureType> types, FailureType type) {
+		int count = 0;
+		for (FailureType t : types) {
+			if (t == type) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+}
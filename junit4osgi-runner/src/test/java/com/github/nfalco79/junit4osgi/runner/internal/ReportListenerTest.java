@@ -1,9 +1,16 @@
 package com.github.nfalco79.junit4osgi.runner.internal;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.example.SimpleTestCase;
 import org.junit.Assert;
 import org.junit.Test;
+import org.junit.runner.Description;
 import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
 
 public class ReportListenerTest {
 
@@ -17,4 +24,113 @@ public class ReportListenerTest {
 		Assert.assertEquals(3, listener.getReport().getChildren().size());
 		Assert.assertEquals(3, listener.getReport().getChildren().size());
 	}
+
+	@Test
+	public void report_last_success_execution_of_a_rerun_test() {
+		Description suite = Description.createSuiteDescription("org.example.FlakyTest");
+		Description flaky = Description.createTestDescription("org.example.FlakyTest", "flaky");
+		Description stable = Description.createTestDescription("org.example.FlakyTest", "stable");
+		suite.addChild(flaky);
+		suite.addChild(stable);
+		Description run = Description.createSuiteDescription("run");
+		run.addChild(suite);
+
+		ReportListener listener = new ReportListener();
+		RunNotifier notifier = new RunNotifier();
+		notifier.addListener(listener);
+
+		notifier.fireTestRunStarted(run);
+		notifier.fireTestStarted(flaky);
+		notifier.fireTestFailure(new Failure(flaky, new AssertionError("first")));
+		notifier.fireTestFinished(flaky);
+		notifier.fireTestStarted(stable);
+		notifier.fireTestFinished(stable);
+		notifier.fireTestRunFinished(new Result());
+
+		// rerun of the failed test
+		notifier.removeListener(listener);
+		notifier.addListener(new RerunListenerWrapper(listener));
+		notifier.fireTestStarted(flaky);
+		notifier.fireTestFailure(new Failure(flaky, new AssertionError("second")));
+		notifier.fireTestFinished(flaky);
+		notifier.fireTestStarted(flaky);
+		notifier.fireTestFinished(flaky);
+
+		for (int i = 0; i < 2; i++) {
+			Report report = listener.getReport();
+			Assert.assertEquals(suite, report.getDescription());
+			Assert.assertEquals(2, report.getChildren().size());
+
+			Report flakyReport = report.getChildren().get(0);
+			Assert.assertEquals(flaky, flakyReport.getDescription());
+			Assert.assertFalse(flakyReport.hasFailure());
+			Assert.assertEquals(2, flakyReport.getRuns().size());
+			Assert.assertEquals("first", flakyReport.getRuns().iterator().next().getFailureMessage());
+
+			Report stableReport = report.getChildren().get(1);
+			Assert.assertEquals(stable, stableReport.getDescription());
+			Assert.assertTrue(stableReport.getRuns().isEmpty());
+		}
+	}
+
+	@Test
+	public void abandoned_rerun_does_not_change_the_report() {
+		Description suite = Description.createSuiteDescription("org.example.FlakyTest");
+		Description flaky = Description.createTestDescription("org.example.FlakyTest", "flaky");
+		suite.addChild(flaky);
+		Description run = Description.createSuiteDescription("run");
+		run.addChild(suite);
+
+		ReportListener listener = new ReportListener();
+		RunNotifier notifier = new RunNotifier();
+		notifier.addListener(listener);
+
+		notifier.fireTestRunStarted(run);
+		notifier.fireTestStarted(flaky);
+		notifier.fireTestFailure(new Failure(flaky, new AssertionError("first")));
+		notifier.fireTestFinished(flaky);
+		notifier.fireTestRunFinished(new Result());
+
+		// the runner abandons the execution before the stuck rerun goes on
+		AtomicBoolean abandoned = new AtomicBoolean();
+		notifier.removeListener(listener);
+		notifier.addListener(new RerunListenerWrapper(listener, abandoned));
+		abandoned.set(true);
+		notifier.fireTestStarted(flaky);
+		notifier.fireTestFinished(flaky);
+
+		Report flakyReport = listener.getReport().getChildren().get(0);
+		Assert.assertTrue(flakyReport.hasFailure());
+		Assert.assertEquals("first", flakyReport.getFailureMessage());
+		Assert.assertFalse(listener.wasSuccess(flaky));
+	}
+
+	@Test
+	public void time_interleaved_tests_separately() throws Exception {
+		Description suite = Description.createSuiteDescription("org.example.ParallelTest");
+		Description slow = Description.createTestDescription("org.example.ParallelTest", "slow");
+		Description fast = Description.createTestDescription("org.example.ParallelTest", "fast");
+		suite.addChild(slow);
+		suite.addChild(fast);
+		Description run = Description.createSuiteDescription("run");
+		run.addChild(suite);
+
+		ReportListener listener = new ReportListener();
+		listener.testRunStarted(run);
+		listener.testStarted(slow);
+		Thread.sleep(50);
+		listener.testStarted(fast);
+		listener.testFinished(fast);
+		Thread.sleep(50);
+		listener.testFinished(slow);
+		listener.testRunFinished(new Result());
+
+		Report report = listener.getReport();
+		long slowTime = report.getChildren().get(0).getElapsedNanos();
+		long fastTime = report.getChildren().get(1).getElapsedNanos();
+		Assert.assertTrue("sub millisecond test not timed", fastTime > 0);
+		Assert.assertTrue("interleaved test timed from the wrong start", fastTime < TimeUnit.MILLISECONDS.toNanos(50));
+		Assert.assertTrue(slowTime >= TimeUnit.MILLISECONDS.toNanos(100));
+		Assert.assertTrue(report.getElapsedNanos() >= slowTime);
+	}
 }
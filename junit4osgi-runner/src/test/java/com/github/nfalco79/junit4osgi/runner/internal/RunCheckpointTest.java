@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RunCheckpointTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void store_and_load_completed_tests() throws Exception {
+		File file = new File(folder.newFolder(), RunCheckpoint.FILE_NAME);
+
+		RunCheckpoint checkpoint = new RunCheckpoint(file);
+		checkpoint.completed("bundle@org.example.Test1", false);
+		checkpoint.completed("bundle@org.example.Test2", true);
+
+		checkpoint = new RunCheckpoint(file);
+		checkpoint.load();
+		assertTrue(checkpoint.isCompleted("bundle@org.example.Test1"));
+		assertFalse(checkpoint.isFailed("bundle@org.example.Test1"));
+		assertTrue(checkpoint.isCompleted("bundle@org.example.Test2"));
+		assertTrue(checkpoint.isFailed("bundle@org.example.Test2"));
+		assertFalse(checkpoint.isCompleted("bundle@org.example.Test3"));
+		assertEquals(2, checkpoint.getCompleted().size());
+
+		checkpoint.reset();
+		assertFalse("Checkpoint file not deleted", file.exists());
+		assertTrue(checkpoint.getCompleted().isEmpty());
+	}
+
+	@Test
+	public void skip_truncated_line() throws Exception {
+		File file = new File(folder.newFolder(), RunCheckpoint.FILE_NAME);
+
+		RunCheckpoint checkpoint = new RunCheckpoint(file);
+		checkpoint.completed("bundle@org.example.Test1", false);
+
+		// simulate a crash while the line was written
+		OutputStream os = new FileOutputStream(file, true);
+		try {
+			os.write("pass".getBytes("UTF-8"));
+		} finally {
+			IOUtil.close(os);
+		}
+
+		checkpoint = new RunCheckpoint(file);
+		checkpoint.load();
+		assertEquals(1, checkpoint.getCompleted().size());
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+public class TestHistoryTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void store_and_load_elapsed_times() throws Exception {
+		File file = new File(folder.newFolder(), "history.properties");
+
+		TestHistory history = new TestHistory(file);
+		history.setElapsedTime("bundle@org.example.Test1", 100);
+		history.setElapsedTime("bundle@org.example.Test2", 2000);
+		history.store();
+
+		assertTrue("History file not written", file.isFile());
+
+		history = new TestHistory(file);
+		history.load();
+		assertEquals(100, history.getElapsedTime("bundle@org.example.Test1"));
+		assertEquals(2000, history.getElapsedTime("bundle@org.example.Test2"));
+		assertEquals(-1, history.getElapsedTime("bundle@org.example.Test3"));
+	}
+
+	@Test
+	public void sort_longest_first_and_unknown_in_front() throws Exception {
+		TestBean fast = mockTest("fast");
+		TestBean slow = mockTest("slow");
+		TestBean unknown = mockTest("unknown");
+		TestBean medium = mockTest("medium");
+
+		TestHistory history = new TestHistory(null);
+		history.setElapsedTime("fast", 10);
+		history.setElapsedTime("slow", 1000);
+		history.setElapsedTime("medium", 100);
+
+		List<TestBean> sorted = history.sort(Arrays.asList(fast, slow, unknown, medium));
+		assertEquals(Arrays.asList(unknown, slow, medium, fast), sorted);
+
+		assertEquals(1110, history.estimate(sorted));
+	}
+
+	@Test
+	public void sort_failures_first() throws Exception {
+		TestBean fast = mockTest("fast");
+		TestBean slow = mockTest("slow");
+		TestBean failed = mockTest("failed");
+
+		File file = new File(folder.newFolder(), "history.properties");
+		TestHistory history = new TestHistory(file);
+		history.setElapsedTime("fast", 10);
+		history.setElapsedTime("slow", 1000);
+		history.setElapsedTime("failed", 1);
+		history.setFailed("failed", true);
+		history.store();
+
+		history = new TestHistory(file);
+		history.load();
+		assertTrue(history.isFailed("failed"));
+		assertFalse(history.isFailed("slow"));
+
+		assertEquals(Arrays.asList(failed, slow, fast), history.sort(Arrays.asList(fast, slow, failed), true));
+		assertEquals(Arrays.asList(slow, fast, failed), history.sort(Arrays.asList(fast, slow, failed), false));
+	}
+
+	private TestBean mockTest(String id) {
+		TestBean test = mock(TestBean.class);
+		when(test.getId()).thenReturn(id);
+		return test;
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Hashtable;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+public class TestOrderTest {
+
+	@Test
+	public void parse_orders() {
+		assertEquals(asList(TestOrder.PRIORITY, TestOrder.FAILURES, TestOrder.DURATION), TestOrder.parse("priority, Failures,DURATION"));
+		assertTrue(TestOrder.parse(null).isEmpty());
+		assertTrue(TestOrder.parse("").isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void parse_unknown_order() {
+		TestOrder.parse("duration, random");
+	}
+
+	@Test
+	public void priority_from_manifest() {
+		Hashtable<String, String> headers = new Hashtable<String, String>();
+		headers.put(TestOrder.PRIORITY_HEADER, "*=3, org.example.FooTest=10, org.example.BarTest=high");
+		Bundle bundle = mock(Bundle.class);
+		when(bundle.getHeaders()).thenReturn(headers);
+
+		assertEquals(10, TestOrder.getPriority(mockTest(bundle, "org.example.FooTest")));
+		// invalid priority fall back to the default one
+		assertEquals(3, TestOrder.getPriority(mockTest(bundle, "org.example.BarTest")));
+		assertEquals(3, TestOrder.getPriority(mockTest(bundle, "org.example.OtherTest")));
+
+		headers.clear();
+		assertEquals(0, TestOrder.getPriority(mockTest(bundle, "org.example.FooTest")));
+	}
+
+	private TestBean mockTest(Bundle bundle, String name) {
+		TestBean test = mock(TestBean.class);
+		when(test.getName()).thenReturn(name);
+		when(test.getBundle()).thenReturn(bundle);
+		return test;
+	}
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+import org.example.JUnit3Test;
+import org.example.SimpleTestCase;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.Description;
+import org.junit.runner.Request;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+public class TestResultCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void store_and_load_green_tests() throws Exception {
+		File file = new File(folder.newFolder(), TestResultCache.FILE_NAME);
+
+		TestResultCache cache = new TestResultCache(file);
+		cache.setResult("green", "abc", false);
+		cache.setResult("red", "abc", true);
+		cache.setResult("unknown", null, false);
+		cache.store();
+
+		cache = new TestResultCache(file);
+		cache.load();
+		assertTrue(cache.isGreen("green", "abc"));
+		assertFalse(cache.isGreen("green", "def"));
+		assertFalse(cache.isGreen("red", "abc"));
+		assertFalse(cache.isGreen("unknown", null));
+
+		cache.setResult("green", "abc", true);
+		assertFalse(cache.isGreen("green", "abc"));
+	}
+
+	@Test
+	public void hash_changes_with_wired_bundle_content() throws Exception {
+		Bundle provider = mockBundle(2, "provider", SimpleTestCase.class);
+		TestBean test = mockTest(mockBundle(1, "acme", SimpleTestCase.class), provider);
+
+		String hash = new TestResultCache(null).hash(test);
+		assertNotNull(hash);
+		assertEquals(hash, new TestResultCache(null).hash(test));
+
+		// same wiring, different content of the provider
+		Bundle updated = mockBundle(3, "provider", JUnit3Test.class);
+		assertNotEquals(hash, new TestResultCache(null).hash(mockTest(test.getBundle(), updated)));
+	}
+
+	@Test
+	public void bundle_digests_are_shared_until_the_bundle_is_modified() throws Exception {
+		Bundle bundle = mockBundle(1, "acme", SimpleTestCase.class);
+		when(bundle.getLastModified()).thenReturn(1l);
+		TestBean test = mockTest(bundle, mockBundle(2, "provider", JUnit3Test.class));
+
+		BundleDigestCache digests = new BundleDigestCache();
+		String hash = new TestResultCache(null, digests).hash(test);
+		assertEquals(2, digests.size());
+
+		// a new run does not read the content again
+		assertEquals(hash, new TestResultCache(null, digests).hash(test));
+		verify(bundle, times(1)).findEntries("/", "*", true);
+
+		when(bundle.getLastModified()).thenReturn(2l);
+		assertEquals(hash, new TestResultCache(null, digests).hash(test));
+		verify(bundle, times(2)).findEntries("/", "*", true);
+
+		digests.remove(1l);
+		assertEquals(1, digests.size());
+	}
+
+	@Test
+	public void skipped_report() throws Exception {
+		Description description = Request.aClass(SimpleTestCase.class).getRunner().getDescription();
+
+		Report report = TestResultCache.newSkippedReport(description);
+		assertEquals(description.testCount(), report.getRunCount());
+		assertEquals(description.testCount(), report.getChildren().size());
+		for (Report child : report.getChildren()) {
+			assertEquals(Report.FailureType.IGNORE, child.getType());
+			assertEquals(TestResultCache.SKIPPED_CACHED, child.getMessage());
+		}
+	}
+
+	private TestBean mockTest(Bundle bundle, Bundle provider) {
+		BundleWiring providerWiring = mock(BundleWiring.class);
+		when(providerWiring.getBundle()).thenReturn(provider);
+		BundleWire wire = mock(BundleWire.class);
+		when(wire.getProviderWiring()).thenReturn(providerWiring);
+		BundleWiring wiring = mock(BundleWiring.class);
+		when(wiring.getRequiredWires(BundleRevision.PACKAGE_NAMESPACE)).thenReturn(asList(wire));
+		when(bundle.adapt(BundleWiring.class)).thenReturn(wiring);
+
+		TestBean test = mock(TestBean.class);
+		when(test.getName()).thenReturn(SimpleTestCase.class.getName());
+		when(test.getBundle()).thenReturn(bundle);
+		return test;
+	}
+
+	private Bundle mockBundle(long id, String symbolicName, final Class<?> content) {
+		Bundle bundle = mock(Bundle.class);
+		when(bundle.getBundleId()).thenReturn(id);
+		when(bundle.getSymbolicName()).thenReturn(symbolicName);
+		when(bundle.getHeaders()).thenReturn(new Hashtable<String, String>());
+		when(bundle.findEntries("/", "*", true)).thenAnswer(new Answer<Enumeration<URL>>() {
+			@Override
+			public Enumeration<URL> answer(InvocationOnMock invocation) throws Throwable {
+				return new Vector<URL>(asList(content.getResource(content.getSimpleName() + ".class"))).elements();
+			}
+		});
+		return bundle;
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+public class TestShardTest {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void index_out_of_count() {
+		new TestShard(3, 3, null);
+	}
+
+	@Test
+	public void each_test_belongs_to_exactly_one_shard() {
+		List<TestBean> tests = mockTests(100);
+
+		int shardCount = 8;
+		Set<TestBean> all = new HashSet<TestBean>();
+		int total = 0;
+		for (int i = 0; i < shardCount; i++) {
+			List<TestBean> selected = new TestShard(i, shardCount, null).select(tests);
+			assertFalse("Shard " + i + " is empty", selected.isEmpty());
+			for (TestBean test : selected) {
+				assertTrue(new TestShard(i, shardCount, null).accept(test));
+			}
+			all.addAll(selected);
+			total += selected.size();
+		}
+		assertEquals(tests.size(), total);
+		assertEquals(tests.size(), all.size());
+	}
+
+	@Test
+	public void shards_are_balanced_by_duration() {
+		List<TestBean> tests = mockTests(7);
+
+		TestHistory history = new TestHistory(null);
+		history.setElapsedTime("bundle@org.example.Test0", 600);
+		history.setElapsedTime("bundle@org.example.Test1", 300);
+		history.setElapsedTime("bundle@org.example.Test2", 300);
+		history.setElapsedTime("bundle@org.example.Test3", 200);
+		history.setElapsedTime("bundle@org.example.Test4", 200);
+		history.setElapsedTime("bundle@org.example.Test5", 100);
+		history.setElapsedTime("bundle@org.example.Test6", 100);
+
+		long[] loads = new long[2];
+		for (int i = 0; i < loads.length; i++) {
+			for (TestBean test : new TestShard(i, loads.length, history).select(tests)) {
+				loads[i] += history.getElapsedTime(test.getId());
+			}
+		}
+		assertEquals(900, loads[0]);
+		assertEquals(900, loads[1]);
+	}
+
+	@Test
+	public void accept_and_select_agree_whatever_the_tests_discovered() {
+		List<TestBean> tests = mockTests(20);
+
+		TestHistory history = new TestHistory(null);
+		for (int i = 0; i < 10; i++) {
+			history.setElapsedTime("bundle@org.example.Test" + i, (i + 1) * 100);
+		}
+
+		int shardCount = 3;
+		for (int i = 0; i < shardCount; i++) {
+			TestShard shard = new TestShard(i, shardCount, history);
+			List<TestBean> selected = shard.select(tests);
+			for (TestBean test : tests) {
+				assertEquals(test.getId(), selected.contains(test), shard.accept(test));
+			}
+			// the assignment does not depend on the other tests known by the instance
+			List<TestBean> subset = tests.subList(5, 15);
+			List<TestBean> expected = new ArrayList<TestBean>(selected);
+			expected.retainAll(subset);
+			assertEquals(expected, shard.select(subset));
+		}
+	}
+
+	@Test
+	public void assignment_is_frozen_at_construction() {
+		List<TestBean> tests = mockTests(20);
+
+		TestHistory history = new TestHistory(null);
+		for (int i = 0; i < 10; i++) {
+			history.setElapsedTime("bundle@org.example.Test" + i, (i + 1) * 100);
+		}
+		TestShard shard = new TestShard(1, 4, history);
+		List<TestBean> selected = shard.select(tests);
+
+		for (int i = 0; i < 20; i++) {
+			history.setElapsedTime("bundle@org.example.Test" + i, 5000 - i);
+		}
+		assertEquals(selected, shard.select(tests));
+	}
+
+	private List<TestBean> mockTests(int count) {
+		List<TestBean> tests = new ArrayList<TestBean>(count);
+		for (int i = 0; i < count; i++) {
+			TestBean test = mock(TestBean.class);
+			when(test.getId()).thenReturn("bundle@org.example.Test" + i);
+			tests.add(test);
+		}
+		return tests;
+	}
+}
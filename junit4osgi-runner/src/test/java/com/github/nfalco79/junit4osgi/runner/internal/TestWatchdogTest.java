@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.runner.Description;
+
+public class TestWatchdogTest {
+
+	@Test
+	public void remaining_time_is_bounded_by_the_timeouts() throws Exception {
+		TestWatchdog watchdog = new TestWatchdog(0, 0);
+		assertFalse(watchdog.isEnabled());
+		assertEquals(Long.MAX_VALUE, watchdog.getRemainingTime());
+
+		watchdog = new TestWatchdog(5000, 1000);
+		watchdog.start();
+		// no test method is running, check again after the test timeout
+		assertEquals(1000, watchdog.getRemainingTime());
+
+		watchdog.testStarted(Description.createTestDescription(getClass(), "test"));
+		long remaining = watchdog.getRemainingTime();
+		assertTrue("Remaining time " + remaining, remaining > 0 && remaining <= 1000);
+		assertTrue(watchdog.newTimeoutException().getMessage().startsWith("Test class timed out"));
+	}
+
+}
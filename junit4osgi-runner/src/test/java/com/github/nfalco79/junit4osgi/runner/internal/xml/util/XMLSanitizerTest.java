@@ -0,0 +1,57 @@
+/*
+ * Copyright 2020 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal.xml.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class XMLSanitizerTest {
+
+	@Test
+	public void valid_text_is_not_copied() {
+		String text = "expected:<1> but was:<2> & \t\r\n è";
+		assertSame(text, XMLSanitizer.sanitize(text));
+		assertNull(XMLSanitizer.sanitize(null));
+	}
+
+	@Test
+	public void replace_control_characters() {
+		assertEquals("a?b?c?", XMLSanitizer.sanitize("a\u0000b\u001Bc￿"));
+	}
+
+	@Test
+	public void keep_valid_surrogate_pairs() {
+		String emoji = "smile 😀";
+		assertSame(emoji, XMLSanitizer.sanitize(emoji));
+	}
+
+	@Test
+	public void replace_lone_surrogates() {
+		assertEquals("a?b", XMLSanitizer.sanitize("a\uD83Db"));
+		assertEquals("a?b", XMLSanitizer.sanitize("a\uDE00b"));
+		assertEquals("a?", XMLSanitizer.sanitize("a\uD83D"));
+		assertEquals("?😀", XMLSanitizer.sanitize("\u0001😀"));
+	}
+
+	@Test
+	public void split_cdata_end_sequence() {
+		assertEquals("<![CDATA[out]]>", XMLSanitizer.cdata("out"));
+		assertEquals("<![CDATA[a]]]]><![CDATA[>b]]]]><![CDATA[>?]]>", XMLSanitizer.cdata("a]]>b]]>\u0002"));
+		assertNull(XMLSanitizer.cdata(null));
+	}
+
+}
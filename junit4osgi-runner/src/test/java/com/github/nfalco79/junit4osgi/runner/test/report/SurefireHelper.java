@@ -20,9 +20,13 @@ import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
 
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
@@ -30,12 +34,19 @@ import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.hamcrest.CoreMatchers;
 
+import com.github.nfalco79.junit4osgi.runner.internal.ReportCompression;
+
 public class SurefireHelper {
 
 	private Xpp3Dom xml;
 
 	public SurefireHelper(File report) throws XmlPullParserException, IOException {
-		FileReader reader = new FileReader(report);
+		Reader reader;
+		if (report.getName().endsWith(ReportCompression.GZIP.getExtension())) {
+			reader = new InputStreamReader(new GZIPInputStream(new FileInputStream(report)), "UTF-8");
+		} else {
+			reader = new FileReader(report);
+		}
 		try {
 			xml = Xpp3DomBuilder.build(reader);
 		} finally {
@@ -24,6 +24,7 @@ import java.text.MessageFormat;
 
 import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.example.BinaryTest;
+import org.example.ControlCharOutputTest;
 import org.example.ErrorTest;
 import org.example.FlakyJUnit4Test;
 import org.example.PropertyTest;
@@ -37,6 +38,7 @@ import org.junit.runner.JUnitCore;
 
 import com.github.nfalco79.junit4osgi.runner.internal.JUnitRunner;
 import com.github.nfalco79.junit4osgi.runner.internal.Report;
+import com.github.nfalco79.junit4osgi.runner.internal.ReportCompression;
 import com.github.nfalco79.junit4osgi.runner.internal.ReportListener;
 import com.github.nfalco79.junit4osgi.runner.internal.XMLReport;
 import com.github.nfalco79.junit4osgi.runner.internal.xml.util.XMLChar;
@@ -296,6 +298,51 @@ public class XMLReportTest {
 		}
 	}
 
+	@Test
+	public void test_binary_chars_and_cdata_end_on_stdout() throws Exception {
+		Report report = runTest(ControlCharOutputTest.class);
+
+		String testName = ControlCharOutputTest.class.getName();
+
+		// write test result
+		File testFolder = folder.newFolder();
+		new XMLReport(testFolder).generateReport(report);
+
+		// checks the content is still a well formed XML
+		File xml = getReport(testFolder);
+		SurefireHelper helper = new SurefireHelper(xml);
+
+		Xpp3Dom testcase = helper.verifyTestCase(testName, "control_chars_and_cdata_end_on_stdout", 0d);
+		helper.verifyStdOutMessage(testcase, "begin?]]>end");
+	}
+
+	@Test
+	public void gzip_compressed_report() throws Exception {
+		Report report = runTest(SimpleSuiteTest.class);
+
+		String testName = SimpleSuiteTest.class.getName();
+
+		// write test result
+		File testFolder = folder.newFolder();
+		new XMLReport(testFolder, ReportCompression.GZIP).generateReport(report);
+
+		// check its name
+		File xml = getReport(testFolder);
+		assertEquals("Wrong file name", MessageFormat.format(DEFAULT_NAME, testName) + ".gz", xml.getName());
+
+		// checks the content
+		SurefireHelper helper = new SurefireHelper(xml);
+		helper.verifySuite(testName, 9, 1, 1, 4, 0.5d);
+
+		Xpp3Dom testcase = helper.verifyTestCase(ErrorTest.class.getName(), "failureTest", 0d);
+		helper.verifyStdOutMessage(testcase, "test sysout failureTest");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknown_report_compression() throws Exception {
+		ReportCompression.parse("rar");
+	}
+
 	private Report runTest(Class<?>... testClass) {
 		JUnitCore core = new JUnitCore();
 		ReportListener listener = new ReportListener();
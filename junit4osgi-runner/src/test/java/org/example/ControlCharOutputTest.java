@@ -0,0 +1,13 @@
+package org.example;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ControlCharOutputTest {
+
+	@Test
+	public void control_chars_and_cdata_end_on_stdout() {
+		System.out.print("begin\u0001]]>end");
+		Assert.fail("output is reported only for failed tests");
+	}
+}
@@ -1,15 +1,23 @@
 package org.example;
 import org.junit.Assert;
+import org.junit.BeforeClass;
 import org.junit.Test;
 
 public class FlakyJUnit4Test {
 
     public static int test1Failures;
     public static int test2Failures;
+    public static int beforeClassCount;
 
     public static void reset() {
         test1Failures = 3;
         test2Failures = 1;
+        beforeClassCount = 0;
+    }
+
+    @BeforeClass
+    public static void beforeClass() {
+        beforeClassCount++;
     }
 
     @Test
@@ -0,0 +1,26 @@
+package org.example;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class HangingTest {
+	public static final CountDownLatch RELEASE = new CountDownLatch(1);
+
+	@Test
+	public void test_ok() {
+	}
+
+	@Test
+	public void test_hang() {
+		// ignores interrupts like a blocked socket read
+		while (RELEASE.getCount() > 0) {
+			try {
+				RELEASE.await();
+			} catch (InterruptedException e) {
+				// continue to wait
+			}
+		}
+	}
+
+}